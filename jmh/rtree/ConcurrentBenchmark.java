@@ -0,0 +1,86 @@
+// ConcurrentRTree searches with and without a writer. The searches run on the snapshot of the last finished write and
+// never wait or run again, so the gap between the groups is the writer's share of the cores and caches, its copies of
+// the paths it changes included. "read" runs the searching threads alone, "mixed" the same threads next to one writer
+// moving points out and back in
+
+package rtree;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Group)
+public class ConcurrentBenchmark {
+	private static final int WINDOWS = 1024;
+	
+	@Param({"RSTAR", "HILBERT"})
+	public String treeType;
+	
+	@Param({"0.0001", "0.01"})
+	public double selectivity;
+	
+	@Param({"100000"})
+	public int count;
+	
+	private ConcurrentRTree tree;
+	private List<Rectangle> points;
+	private Rectangle[] windows;
+	
+	@State(Scope.Thread)
+	public static class Cursor {
+		int next;
+	}
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		points = DataGenerator.independent(count, 2, 1);
+		RTree packed = new RTree(16, 0.4, TreeBenchmark.treeType(treeType), 2);
+		packed.bulkLoad(points);
+		tree = new ConcurrentRTree(packed);
+		windows = rtree.Benchmark.selectivityWindows(points, WINDOWS, selectivity, 1).toArray(new Rectangle[WINDOWS]);
+	}
+	
+	private List<Rectangle> search(Cursor c) {
+		c.next = (c.next + 1) & (WINDOWS - 1);
+		return tree.search(windows[c.next]);
+	}
+	
+	@Benchmark
+	@Group("read")
+	@GroupThreads(3)
+	public List<Rectangle> readOnly(Cursor c) { return search(c); }
+	
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(3)
+	public List<Rectangle> reader(Cursor c) { return search(c); }
+	
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(1)
+	public boolean writer(Cursor c) {
+		Rectangle rec = points.get(c.next);
+		c.next = (c.next + 1) % points.size();
+		tree.delete(rec);
+		return tree.insert(rec);
+	}
+}
\ No newline at end of file
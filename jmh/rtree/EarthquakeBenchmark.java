@@ -0,0 +1,30 @@
+// TreeBenchmark on the bundled earthquake epicenters, 2-dimensional and clustered along the coast and the faults
+
+package rtree;
+
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+public class EarthquakeBenchmark extends TreeBenchmark {
+	@Param({"RTREE_LINEAR", "RTREE_QUADRATIC", "RSTAR", "HILBERT"})
+	public String treeType;
+	
+	@Param({"8", "16", "32"})
+	public int capacity;
+	
+	@Param({"greek-earthquakes-1964-2000.txt"})
+	public String file;
+	
+	@Override
+	protected List<Rectangle> points() throws Exception { return rtree.Benchmark.readPoints(file); }
+	
+	@Override
+	protected String treeType() { return treeType; }
+	
+	@Override
+	protected int capacity() { return capacity; }
+}
\ No newline at end of file
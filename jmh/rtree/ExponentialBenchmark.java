@@ -0,0 +1,34 @@
+// TreeBenchmark of the exponential split on the DataGenerator distributions, on the capacities the split supports.
+// Its exhaustive search is only affordable up to capacity 16, the other tree types have their own sweep
+
+package rtree;
+
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+public class ExponentialBenchmark extends TreeBenchmark {
+	@Param({"4", "8", "16"})
+	public int capacity;
+	
+	@Param({"INDEPENDENT", "CORRELATED", "ANTI_CORRELATED"})
+	public String data;
+	
+	@Param({"2", "3", "5"})
+	public int dimension;
+	
+	@Param({"20000"})
+	public int count;
+	
+	@Override
+	protected List<Rectangle> points() { return DataGenerator.generate(SyntheticBenchmark.distribution(data), count, dimension, 1); }
+	
+	@Override
+	protected String treeType() { return "RTREE_EXPONENTIAL"; }
+	
+	@Override
+	protected int capacity() { return capacity; }
+}
\ No newline at end of file
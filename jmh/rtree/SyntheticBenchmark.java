@@ -0,0 +1,45 @@
+// TreeBenchmark on the DataGenerator distributions, swept over dimension as well
+
+package rtree;
+
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+public class SyntheticBenchmark extends TreeBenchmark {
+	@Param({"RTREE_LINEAR", "RTREE_QUADRATIC", "RSTAR", "HILBERT"})
+	public String treeType;
+	
+	@Param({"8", "16", "32"})
+	public int capacity;
+	
+	@Param({"INDEPENDENT", "CORRELATED", "ANTI_CORRELATED"})
+	public String data;
+	
+	@Param({"2", "3", "5"})
+	public int dimension;
+	
+	@Param({"20000"})
+	public int count;
+	
+	@Override
+	protected List<Rectangle> points() { return DataGenerator.generate(distribution(data), count, dimension, 1); }
+	
+	@Override
+	protected String treeType() { return treeType; }
+	
+	@Override
+	protected int capacity() { return capacity; }
+	
+	static int distribution(String name) {
+		switch (name) {
+			case "INDEPENDENT": return DataGenerator.INDEPENDENT;
+			case "CORRELATED": return DataGenerator.CORRELATED;
+			case "ANTI_CORRELATED": return DataGenerator.ANTI_CORRELATED;
+			default: throw new IllegalArgumentException("Unknown distribution " + name + ".");
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,127 @@
+// Tree operations under JMH, swept over fill factor here and over tree type, capacity and data set by the @Param of the
+// subclasses: EarthquakeBenchmark reads the bundled file, SyntheticBenchmark sweeps DataGenerator distributions and
+// dimensions, ExponentialBenchmark runs the exponential split on the capacities it supports. Run with the GC profiler
+// for the allocation per operation, see pom.xml:
+// mvn -P jmh verify -Djmh.args="SyntheticBenchmark.search -p treeType=RSTAR -p data=ANTI_CORRELATED"
+// Builds are timed per tree, searches per window and delete per batch of DELETE_BATCH entries from a fresh tree
+
+package rtree;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public abstract class TreeBenchmark {
+	static final int DELETE_BATCH = 10000; // Deletes per measured iteration, every data set has at least this many points
+	static final int WINDOWS = 1024;
+	
+	@Param({"0.3", "0.4"})
+	public double fillFactor;
+	
+	private List<Rectangle> points;
+	private int pointDimension;
+	private int type;
+	private int capacity;
+	private RTree tree; // Built by insertion, for the queries
+	private RTree deleteTree;
+	private int deleted;
+	
+	protected abstract List<Rectangle> points() throws Exception;
+	
+	protected abstract String treeType();
+	
+	protected abstract int capacity();
+	
+	@State(Scope.Thread)
+	public static class Selectivity { // Share of the data space a search window covers
+		@Param({"0.0001", "0.001", "0.01"})
+		public double selectivity;
+		
+		Rectangle[] windows; // Made on the first search of the trial
+		int next;
+	}
+	
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		type = treeType(treeType());
+		capacity = capacity();
+		points = points();
+		if (points.size() < DELETE_BATCH) { throw new IllegalArgumentException("Data set should have at least " + DELETE_BATCH + " points."); }
+		pointDimension = points.get(0).getDimension();
+		tree = build();
+	}
+	
+	@Setup(Level.Iteration)
+	public void refill(BenchmarkParams params) { // Every delete iteration starts from the full tree
+		if (!params.getBenchmark().endsWith(".delete")) { return; }
+		deleteTree = build();
+		deleted = 0;
+	}
+	
+	private RTree build() {
+		RTree res = new RTree(capacity, fillFactor, type, pointDimension);
+		for (int i = 0; i < points.size(); i ++) {
+			res.insert(points.get(i));
+		}
+		return res;
+	}
+	
+	static int treeType(String name) {
+		switch (name) {
+			case "RTREE_LINEAR": return Constants.RTREE_LINEAR;
+			case "RTREE_QUADRATIC": return Constants.RTREE_QUADRATIC;
+			case "RTREE_EXPONENTIAL": return Constants.RTREE_EXPONENTIAL;
+			case "RSTAR": return Constants.RSTAR;
+			case "HILBERT": return Constants.HILBERT;
+			default: throw new IllegalArgumentException("Unknown tree type " + name + ".");
+		}
+	}
+	
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public RTree insert() { return build(); }
+	
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public RTree bulkLoad() { return RTree.bulkLoad(points, capacity, fillFactor, type, pointDimension); }
+	
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public List<Rectangle> search(Selectivity s) {
+		if (s.windows == null) {
+			List<Rectangle> windows = rtree.Benchmark.selectivityWindows(points, WINDOWS, s.selectivity, 1);
+			s.windows = windows.toArray(new Rectangle[WINDOWS]);
+		}
+		s.next = (s.next + 1) & (WINDOWS - 1);
+		return tree.search(s.windows[s.next]);
+	}
+	
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public List<Rectangle> skyline() { return tree.skyline(); }
+	
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 3, batchSize = DELETE_BATCH)
+	@Measurement(iterations = 5, batchSize = DELETE_BATCH)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public int delete() { return deleteTree.delete(points.get(deleted ++)); }
+}
\ No newline at end of file
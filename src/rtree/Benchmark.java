@@ -0,0 +1,173 @@
+// Simple benchmark of the tree operations on the earthquake data
+// Reports time and heap allocation per operation, the rectangles are created before measuring
+// The configurations are compared by the JMH benchmarks in jmh, this is a quick run on the plain classpath
+
+package rtree;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class Benchmark {
+	private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+	
+	private static long allocatedBytes() { // -1 where the JVM has no per-thread allocation counter, it is HotSpot specific
+		if (!(THREAD_BEAN instanceof com.sun.management.ThreadMXBean)) { return -1; }
+		return ((com.sun.management.ThreadMXBean) THREAD_BEAN).getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+	
+	private static void report(String name, int ops, long nanos, long startBytes) { // Allocated since startBytes was read
+		long bytes = allocatedBytes() - startBytes;
+		String allocated = startBytes < 0 ? "n/a" : String.format("%.1f", (double) bytes / ops);
+		System.out.println(String.format("%-10s %8d ops %12.1f ns/op %12s B/op", name, ops, (double) nanos / ops, allocated));
+	}
+	
+	public static List<Rectangle> readPoints(String fileName) throws Exception { // One point per line, coordinates separated by spaces
+		return new PointLoader(Paths.get(fileName)).readAll();
+	}
+	
+	public static int countVisits(RTNode node, Rectangle rec) { // Nodes a window search on the subtree reads
+		int res = 1;
+		if (!node.isLeaf()) {
+			for (int i = 0; i < node.usedSpace; i ++) {
+				if (node.intersects(i, rec)) { res += countVisits(((RTDirNode) node).getChild(i), rec); }
+			}
+		}
+		return res;
+	}
+	
+	public static List<Rectangle> randomWindows(List<Rectangle> points, int count, double size, long seed) { // Square windows centered at data points
+		Random random = new Random(seed);
+		List<Rectangle> res = new ArrayList<>();
+		for (int i = 0; i < count; i ++) {
+			Rectangle p = points.get(random.nextInt(points.size()));
+			double[] low = new double[p.getDimension()];
+			double[] high = new double[p.getDimension()];
+			for (int d = 0; d < low.length; d ++) {
+				low[d] = p.lowCoordinate(d) - size / 2;
+				high[d] = p.lowCoordinate(d) + size / 2;
+			}
+			res.add(new Rectangle(new Point(low), new Point(high)));
+		}
+		return res;
+	}
+	
+	private static void compareTreeTypes(List<Rectangle> points, int capacity) { // Build time and node visits per search of the split strategies
+		int[] types = {Constants.RTREE_LINEAR, Constants.RTREE_QUADRATIC, Constants.RTREE_EXPONENTIAL, Constants.RSTAR, Constants.HILBERT};
+		String[] names = {"linear", "quadratic", "exponential", "rstar", "hilbert"};
+		List<Rectangle> windows = randomWindows(points, 1000, 0.5, 1);
+		System.out.println("---------------------------------");
+		System.out.println("Node visits per search, capacity " + capacity);
+		for (int t = 0; t < types.length; t ++) {
+			RTree tree = new RTree(capacity, 0.4f, types[t], 2);
+			long time = System.nanoTime();
+			for (int i = 0; i < points.size(); i ++) {
+				tree.insert(points.get(i));
+			}
+			time = System.nanoTime() - time;
+			long visits = 0;
+			for (int i = 0; i < windows.size(); i ++) {
+				visits += countVisits(tree.getRoot(), windows.get(i));
+			}
+			System.out.println(String.format("%-12s build %10.1f ms %10.1f visits/search", names[t], time / 1e6, (double) visits / windows.size()));
+		}
+	}
+	
+	// Selectivity is the share of the data space a window covers, windows are centered at data points so they are
+	// never empty
+	public static List<Rectangle> selectivityWindows(List<Rectangle> points, int count, double selectivity, long seed) {
+		int dimension = points.get(0).getDimension();
+		Rectangle space = Rectangle.getUnion(points.toArray(new Rectangle[points.size()]));
+		Random random = new Random(seed);
+		List<Rectangle> res = new ArrayList<>();
+		for (int i = 0; i < count; i ++) {
+			Rectangle p = points.get(random.nextInt(points.size()));
+			double[] low = new double[dimension];
+			double[] high = new double[dimension];
+			for (int d = 0; d < dimension; d ++) {
+				double side = (space.highCoordinate(d) - space.lowCoordinate(d)) * Math.pow(selectivity, 1.0 / dimension);
+				low[d] = p.lowCoordinate(d) - side / 2;
+				high[d] = p.lowCoordinate(d) + side / 2;
+			}
+			res.add(new Rectangle(new Point(low), new Point(high)));
+		}
+		return res;
+	}
+	
+	public static void main(String args[]) throws Exception {
+		String fileName = args.length > 0 ? args[0] : "greek-earthquakes-1964-2000.txt";
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		List<Rectangle> points = readPoints(fileName);
+		Rectangle query = new Rectangle(new Point(new double[] {37, 22}), new Point(new double[] {38, 23}));
+		Point station = new Point(new double[] {37.5, 22.5});
+		
+		for (int r = 0; r < rounds; r ++) { // The first rounds are warm-up for the JIT
+			System.out.println("---------------------------------");
+			System.out.println("Round " + (r + 1));
+			RTree tree = new RTree(4, 0.4f, Constants.RTREE_QUADRATIC, 2);
+			
+			long bytes = allocatedBytes();
+			long time = System.nanoTime();
+			for (int i = 0; i < points.size(); i ++) {
+				tree.insert(points.get(i));
+			}
+			report("insert", points.size(), System.nanoTime() - time, bytes);
+			
+			bytes = allocatedBytes();
+			time = System.nanoTime();
+			for (int i = 0; i < 100; i ++) {
+				tree.search(query);
+			}
+			report("search", 100, System.nanoTime() - time, bytes);
+			
+			bytes = allocatedBytes();
+			time = System.nanoTime();
+			for (int i = 0; i < 100; i ++) {
+				tree.searchStream(query).limit(20).count(); // First page only
+			}
+			report("page", 100, System.nanoTime() - time, bytes);
+			
+			bytes = allocatedBytes();
+			time = System.nanoTime();
+			for (int i = 0; i < 100; i ++) {
+				tree.nearest(station, 10);
+			}
+			report("nearest", 100, System.nanoTime() - time, bytes);
+			
+			bytes = allocatedBytes();
+			time = System.nanoTime();
+			for (int i = 0; i < 100; i ++) {
+				tree.skyline();
+			}
+			report("skyline", 100, System.nanoTime() - time, bytes);
+			
+			bytes = allocatedBytes();
+			time = System.nanoTime();
+			for (int i = 0; i < 100; i ++) {
+				tree.skyline(query);
+			}
+			report("cskyline", 100, System.nanoTime() - time, bytes);
+			
+			bytes = allocatedBytes();
+			time = System.nanoTime();
+			for (int i = 0; i < 100; i ++) {
+				tree.parallelSkyline();
+			}
+			report("pskyline", 100, System.nanoTime() - time, bytes); // Allocations of the calling thread only
+			
+			bytes = allocatedBytes();
+			time = System.nanoTime();
+			for (int i = 0; i < points.size(); i ++) {
+				tree.delete(points.get(i));
+			}
+			report("delete", points.size(), System.nanoTime() - time, bytes);
+		}
+		
+		compareTreeTypes(points, 4);
+		compareTreeTypes(points, 8);
+		compareTreeTypes(points, 16);
+	}
+}
\ No newline at end of file
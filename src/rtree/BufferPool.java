@@ -0,0 +1,181 @@
+// Cache of the nodes of a paged tree, keeps at most capacity nodes in memory
+// Replacement is by the clock algorithm: an access sets the reference bit of the frame, the hand clears the bits
+// it passes and evicts the first frame whose bit is clear. Pinned frames, the root and index nodes that still have
+// children in memory are skipped. A changed node is written back to its page when it is evicted or flushed
+// An update pins the nodes it changes, only while it sorts them out at its end nothing is evicted
+
+package rtree;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class BufferPool {
+	private PagedRTree tree;
+	private int capacity;
+	private Map<Integer, Frame> frames = new HashMap<>(); // By page
+	private List<Frame> clock = new ArrayList<>();
+	private int hand;
+	private int holds; // Eviction is held off while above 0, see PagedRTree.endUpdate
+	private long hits;
+	private long misses;
+	private long writes;
+	private long evictions;
+	
+	private static class Frame {
+		RTNode node;
+		int slot; // Position on the clock
+		int pins;
+		boolean referenced;
+		boolean dirty;
+	}
+	
+	public BufferPool(PagedRTree tree, int capacity) {
+		if (capacity < 1) { throw new IllegalArgumentException("Buffer pool needs at least one frame."); }
+		this.tree = tree;
+		this.capacity = capacity;
+	}
+	
+	public int getCapacity() { return capacity; }
+	
+	public void setCapacity(int capacity) {
+		if (capacity < 1) { throw new IllegalArgumentException("Buffer pool needs at least one frame."); }
+		this.capacity = capacity;
+		shrink();
+	}
+	
+	public int size() { return clock.size(); }
+	
+	public long getHits() { return hits; }
+	
+	public long getMisses() { return misses; } // Every miss is a page read
+	
+	public long getWrites() { return writes; }
+	
+	public long getEvictions() { return evictions; }
+	
+	public double getHitRatio() { return hits + misses == 0 ? 0 : (double) hits / (hits + misses); }
+	
+	public void resetCounters() {
+		hits = 0;
+		misses = 0;
+		writes = 0;
+		evictions = 0;
+	}
+	
+	public void pin(RTNode node) { frame(node).pins ++; } // The node stays in memory till it is unpinned
+	
+	public void unpin(RTNode node) {
+		Frame frame = frame(node);
+		if (frame.pins == 0) { throw new IllegalStateException("Node is not pinned."); }
+		frame.pins --;
+		if (frame.pins == 0) { shrink(); }
+	}
+	
+	public boolean contains(RTNode node) { // Judge if the node is the one in memory for its page
+		Frame frame = node.page == Constants.NIL ? null : frames.get(node.page);
+		return frame != null && frame.node == node;
+	}
+	
+	protected RTNode get(int page) { // The node of the page if it is in memory, null after counting a miss
+		Frame frame = frames.get(page);
+		if (frame == null) {
+			misses ++;
+			return null;
+		}
+		frame.referenced = true;
+		hits ++;
+		return frame.node;
+	}
+	
+	protected void access(RTNode node) { // A node in memory was reached through its parent
+		Frame frame = frames.get(node.page);
+		if (frame != null && frame.node == node) {
+			frame.referenced = true;
+			hits ++;
+		}
+	}
+	
+	protected void add(RTNode node, boolean dirty) { // A node just read from its page or given its first page
+		if (frames.containsKey(node.page)) { throw new IllegalStateException("Page " + node.page + " is already in memory."); }
+		Frame frame = new Frame();
+		frame.node = node;
+		frame.slot = clock.size();
+		frame.referenced = true;
+		frame.dirty = dirty;
+		frames.put(node.page, frame);
+		clock.add(frame);
+		shrink(frame); // Not the new node, the caller is about to use it
+	}
+	
+	protected void markDirty(RTNode node) { frame(node).dirty = true; }
+	
+	protected RTNode remove(int page) { // Drop the frame of a page that was freed, the node is returned and not written
+		Frame frame = frames.remove(page);
+		if (frame == null) { return null; }
+		drop(frame);
+		return frame.node;
+	}
+	
+	protected void hold() { holds ++; }
+	
+	protected void release() {
+		holds --;
+		shrink();
+	}
+	
+	public void flush() { // Write all changed nodes
+		for (int i = 0; i < clock.size(); i ++) {
+			Frame frame = clock.get(i);
+			if (frame.dirty) {
+				tree.write(frame.node);
+				frame.dirty = false;
+				writes ++;
+			}
+		}
+	}
+	
+	private Frame frame(RTNode node) {
+		Frame frame = node.page == Constants.NIL ? null : frames.get(node.page);
+		if (frame == null || frame.node != node) { throw new IllegalArgumentException("Node is not in the buffer pool."); }
+		return frame;
+	}
+	
+	private void shrink() { shrink(null); }
+	
+	private void shrink(Frame keep) { // Evict till the pool fits, gives up after two rounds without a victim
+		if (holds > 0) { return; }
+		int passed = 0;
+		while (clock.size() > capacity && passed < 2 * clock.size()) {
+			if (hand >= clock.size()) { hand = 0; }
+			Frame frame = clock.get(hand);
+			if (frame == keep || frame.pins > 0 || !tree.isEvictable(frame.node)) {
+				hand ++;
+				passed ++;
+			} else if (frame.referenced) {
+				frame.referenced = false;
+				hand ++;
+				passed ++;
+			} else { // The last frame moves into the slot, the hand stays
+				if (frame.dirty) {
+					tree.write(frame.node);
+					writes ++;
+				}
+				frames.remove(frame.node.page);
+				drop(frame);
+				tree.unload(frame.node);
+				evictions ++;
+				passed = 0;
+			}
+		}
+	}
+	
+	private void drop(Frame frame) { // Take the frame off the clock
+		Frame last = clock.remove(clock.size() - 1);
+		if (last != frame) {
+			last.slot = frame.slot;
+			clock.set(frame.slot, last);
+		}
+	}
+}
\ No newline at end of file
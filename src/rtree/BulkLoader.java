@@ -0,0 +1,165 @@
+// Base class of the bulk loaders, builds a packed tree bottom-up instead of inserting one by one
+// Subclasses decide the order of the entries on each level, consecutive runs of capacity entries form a node
+// The data are collected in flat arrays, given as rectangles or copied straight from the leaves of a tree
+
+package rtree;
+
+import java.util.Arrays;
+import java.util.List;
+
+public abstract class BulkLoader {
+	protected RTree rtree;
+	protected int capacity;
+	protected int dimension;
+	private double[] lows; // The data added so far, in flat arrays like the entries of a node
+	private double[] highs;
+	private long[] ids;
+	private int size;
+	
+	public BulkLoader(RTree rtree) {
+		this.rtree = rtree;
+		capacity = rtree.getCapacity();
+		dimension = rtree.getDimension();
+		clear();
+	}
+	
+	public void add(Rectangle rec) { // Data for the next load
+		if (rec == null) { throw new IllegalArgumentException("Rectangle cannot be null."); }
+		if (rec.getDimension() != dimension) { throw new IllegalArgumentException("Rectangle dimension different than RTree dimension."); }
+		add(rec.lows(), rec.highs(), 0, rec.getId());
+	}
+	
+	public void add(RTNode node) { // All data below the node, copied leaf by leaf without building rectangles
+		if (node.isLeaf()) {
+			for (int i = 0; i < node.usedSpace; i ++) {
+				add(node.lows, node.highs, i * dimension, ((RTDataNode) node).ids[i]);
+			}
+			return;
+		}
+		for (int i = 0; i < node.usedSpace; i ++) {
+			add(((RTDirNode) node).getChild(i)); // A paged tree reads the child, and may evict it again once it is copied
+		}
+	}
+	
+	private void add(double[] low, double[] high, int off, long id) {
+		if (size == ids.length) {
+			lows = Arrays.copyOf(lows, 2 * lows.length);
+			highs = Arrays.copyOf(highs, 2 * highs.length);
+			ids = Arrays.copyOf(ids, 2 * ids.length);
+		}
+		System.arraycopy(low, off, lows, size * dimension, dimension);
+		System.arraycopy(high, off, highs, size * dimension, dimension);
+		ids[size ++] = id;
+	}
+	
+	private void clear() {
+		lows = new double[16 * dimension];
+		highs = new double[16 * dimension];
+		ids = new long[16];
+		size = 0;
+	}
+	
+	public HilbertCurve bounding() { return HilbertCurve.bounding(dimension, lows, highs, size); } // Curve over the space of the data added
+	
+	public RTNode load(List<Rectangle> recs) { // Build the tree and return its root
+		if (recs == null) { throw new IllegalArgumentException("Rectangle list cannot be null."); }
+		for (int i = 0; i < recs.size(); i ++) {
+			add(recs.get(i));
+		}
+		return load();
+	}
+	
+	// Build the tree from the data added and return its root. Every other node is given to RTree.packed when it is done,
+	// its parent takes the entry from the arrays of the level, so a paged tree can write the node out at once
+	public RTNode load() {
+		int n = size;
+		if (n == 0) { return new RTDataNode(rtree, Constants.NULL); }
+		double[] entryLows = lows, entryHighs = highs;
+		long[] entryIds = ids;
+		clear();
+		boolean hilbert = rtree.getTreeType() == Constants.HILBERT;
+		
+		// Pack the leaves
+		int[] order = sort(centers(entryLows, entryHighs, n), n, 0);
+		int[] sizes = nodeSizes(n);
+		RTNode[] nodes = new RTNode[sizes.length];
+		double[] nodeLows = new double[sizes.length * dimension];
+		double[] nodeHighs = new double[sizes.length * dimension];
+		long[] nodeHilberts = hilbert ? new long[sizes.length] : null;
+		int[] nodeCounts = new int[sizes.length];
+		int k = 0;
+		for (int i = 0; i < sizes.length; i ++) {
+			RTDataNode leaf = new RTDataNode(rtree, Constants.NULL);
+			for (int j = 0; j < sizes[i]; j ++) {
+				int e = order[k ++];
+				leaf.addData(entryLows, entryHighs, e * dimension, entryIds[e]);
+			}
+			nodes[i] = done(leaf, i, nodeLows, nodeHighs, nodeHilberts, nodeCounts, sizes.length == 1);
+		}
+		
+		// Pack the index levels till only the root remains
+		int level = 1;
+		while (nodes.length > 1) {
+			n = nodes.length;
+			order = sort(centers(nodeLows, nodeHighs, n), n, level);
+			sizes = nodeSizes(n);
+			RTNode[] upper = new RTNode[sizes.length];
+			double[] upperLows = new double[sizes.length * dimension];
+			double[] upperHighs = new double[sizes.length * dimension];
+			long[] upperHilberts = hilbert ? new long[sizes.length] : null;
+			int[] upperCounts = new int[sizes.length];
+			k = 0;
+			for (int i = 0; i < sizes.length; i ++) {
+				RTDirNode dir = new RTDirNode(rtree, Constants.NULL, level);
+				for (int j = 0; j < sizes[i]; j ++) {
+					int e = order[k ++];
+					dir.addChild(nodes[e], nodeLows, nodeHighs, e * dimension, hilbert ? nodeHilberts[e] : 0, nodeCounts[e]);
+				}
+				upper[i] = done(dir, i, upperLows, upperHighs, upperHilberts, upperCounts, sizes.length == 1);
+			}
+			nodes = upper;
+			nodeLows = upperLows;
+			nodeHighs = upperHighs;
+			nodeHilberts = upperHilberts;
+			nodeCounts = upperCounts;
+			level ++;
+		}
+		return nodes[0];
+	}
+	
+	private RTNode done(RTNode node, int i, double[] nodeLows, double[] nodeHighs, long[] nodeHilberts, int[] nodeCounts, boolean root) { // Note the entry of a packed node
+		node.cover(nodeLows, nodeHighs, i * dimension);
+		if (nodeHilberts != null) { nodeHilberts[i] = node.hilberts[node.usedSpace - 1]; }
+		nodeCounts[i] = node.count();
+		return root ? node : rtree.packed(node);
+	}
+	
+	private double[] centers(double[] entryLows, double[] entryHighs, int n) { // Centers of the rectangles of the entries
+		double[] centers = new double[n * dimension];
+		for (int i = 0; i < n * dimension; i ++) {
+			centers[i] = (entryLows[i] + entryHighs[i]) / 2;
+		}
+		return centers;
+	}
+	
+	// Get the order in which the entries of the level are packed, given the centers of their rectangles
+	// Level 0 are the data, the upper levels are the nodes built by the previous pass in the order they were packed
+	protected abstract int[] sort(double[] centers, int n, int level);
+	
+	private int[] nodeSizes(int n) { // Fill the nodes up to capacity, the last two are balanced to keep the minimum fill
+		int count = (n + capacity - 1) / capacity;
+		int[] sizes = new int[count];
+		for (int i = 0; i < count; i ++) {
+			sizes[i] = capacity;
+		}
+		int last = n - (count - 1) * capacity;
+		sizes[count - 1] = last;
+		int min = (int) Math.round(capacity * rtree.getFillFactor());
+		if (count > 1 && last < min) {
+			int total = capacity + last;
+			sizes[count - 2] = total - total / 2;
+			sizes[count - 1] = total / 2;
+		}
+		return sizes;
+	}
+}
\ No newline at end of file
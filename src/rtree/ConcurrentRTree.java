@@ -0,0 +1,266 @@
+// RTree shared by reader and writer threads
+// Writers hold the write lock of a StampedLock, one at a time, as an insertion may split, reinsert or condense nodes all
+// over the path. The tree is in copy-on-write mode: a write copies the nodes it changes and publishes the new root when
+// it is done, so the queries take no lock and run on the snapshot published by the last finished write. Writers never
+// wait for readers, and readers never wait for writers or run again. snapshot() gives one fixed view for several queries.
+// The id map and the live skyline are kept apart from the nodes and read under the read lock. The tree must support
+// snapshots, a paged tree doesn't. ConcurrentBenchmark in jmh measures the queries alone and with writers
+// With a rebuild policy the tree is analyzed every few writes on the given executor. A tree due for a rebuild is packed
+// from the snapshot of the last write in a scratch tree without the lock, the writes made meanwhile are logged as
+// stored, ids and all, and redone on it when it is put in under the lock. Writers only wait for the snapshot to be taken
+// and for the logged writes to be redone
+
+package rtree;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.StampedLock;
+
+public class ConcurrentRTree {
+	private RTree tree;
+	private StampedLock lock = new StampedLock();
+	private long writes; // Under the write lock
+	private long checked; // Writes at the last check
+	private int rebuilds;
+	private volatile RebuildPolicy policy;
+	private volatile Executor executor;
+	private AtomicBoolean rebuilding = new AtomicBoolean(); // A check is scheduled or running
+	private List<Rectangle> log; // Writes since the data were copied for a rebuild, null if none is under way
+	private BitSet logDeleted;
+	
+	public ConcurrentRTree(int capacity, double fillFactor, int treeType, int dimension) {
+		this(new RTree(capacity, fillFactor, treeType, dimension));
+	}
+	
+	public ConcurrentRTree(RTree tree) { // The tree must not be used directly any more
+		if (tree == null) { throw new IllegalArgumentException("Tree cannot be null."); }
+		tree.enableSnapshots();
+		this.tree = tree;
+	}
+	
+	public boolean insert(Rectangle rec) {
+		long stamp = lock.writeLock();
+		boolean check = false;
+		try {
+			boolean res = tree.insert(rec);
+			if (log != null) { log.add(RTree.plain(rec)); } // Stored without an id
+			check = written();
+			return res;
+		} finally {
+			lock.unlockWrite(stamp);
+			if (check) { scheduleCheck(); }
+		}
+	}
+	
+	public int delete(Rectangle rec) {
+		long stamp = lock.writeLock();
+		boolean check = false;
+		try {
+			Rectangle old = log == null ? null : stored(rec);
+			int res = tree.delete(rec);
+			if (log != null && res >= 0) { logDelete(old); }
+			check = written();
+			return res;
+		} finally {
+			lock.unlockWrite(stamp);
+			if (check) { scheduleCheck(); }
+		}
+	}
+	
+	public long insertWithId(Rectangle rec) {
+		long stamp = lock.writeLock();
+		boolean check = false;
+		try {
+			long id = tree.insertWithId(rec);
+			if (log != null) { log.add(tree.get(id)); } // As stored, with the id
+			check = written();
+			return id;
+		} finally {
+			lock.unlockWrite(stamp);
+			if (check) { scheduleCheck(); }
+		}
+	}
+	
+	public boolean delete(long id) {
+		long stamp = lock.writeLock();
+		boolean check = false;
+		try {
+			Rectangle old = tree.get(id);
+			boolean res = tree.delete(id);
+			if (log != null && res) { logDelete(old); }
+			check = written();
+			return res;
+		} finally {
+			lock.unlockWrite(stamp);
+			if (check) { scheduleCheck(); }
+		}
+	}
+	
+	public boolean update(long id, Rectangle rec) {
+		long stamp = lock.writeLock();
+		boolean check = false;
+		try {
+			Rectangle old = tree.get(id);
+			boolean res = tree.update(id, rec);
+			if (log != null && res) { // Redone as a deletion and an insertion
+				logDelete(old);
+				log.add(tree.get(id));
+			}
+			check = written();
+			return res;
+		} finally {
+			lock.unlockWrite(stamp);
+			if (check) { scheduleCheck(); }
+		}
+	}
+	
+	private Rectangle stored(Rectangle rec) { // The entry delete(rec) takes out of the tree, with its id if it has one
+		RTDataNode leaf = tree.getRoot().findLeaf(rec);
+		if (leaf == null) { return null; }
+		for (int i = 0; i < leaf.usedSpace; i ++) {
+			if (leaf.matches(i, rec)) { return leaf.getData(i); }
+		}
+		return null;
+	}
+	
+	private void logDelete(Rectangle rec) {
+		logDeleted.set(log.size());
+		log.add(rec);
+	}
+	
+	public void bulkLoad(List<Rectangle> recs) {
+		long stamp = lock.writeLock();
+		try {
+			tree.bulkLoad(recs);
+			log = null; // A rebuild under way is out of date
+			writes ++;
+			checked = writes; // Packed now
+		} finally { lock.unlockWrite(stamp); }
+	}
+	
+	public void rebuild() {
+		long stamp = lock.writeLock();
+		try {
+			tree.rebuild();
+			log = null;
+			writes ++;
+			checked = writes;
+		} finally { lock.unlockWrite(stamp); }
+	}
+	
+	public TreeSnapshot snapshot() { return tree.snapshot(); } // The tree after the last finished write
+	
+	public TreeQuality analyze() { return tree.snapshot().analyze(); }
+	
+	public boolean contains(long id) {
+		long stamp = lock.readLock();
+		try { return tree.contains(id); }
+		finally { lock.unlockRead(stamp); }
+	}
+	
+	public Rectangle get(long id) {
+		long stamp = lock.readLock();
+		try { return tree.get(id); }
+		finally { lock.unlockRead(stamp); }
+	}
+	
+	public List<Rectangle> search(Rectangle rec) { return tree.snapshot().search(rec); }
+	
+	public List<Rectangle> nearest(Point q, int k) { return tree.snapshot().nearest(q, k); }
+	
+	public List<Rectangle> skyline() { return tree.snapshot().skyline(); }
+	
+	public List<Rectangle> skyline(Rectangle constraint) { return tree.snapshot().skyline(constraint); }
+	
+	public List<Rectangle> kSkyband(int k) { return tree.snapshot().kSkyband(k); }
+	
+	public List<Rectangle> topKDominating(int k) { return tree.snapshot().topKDominating(k); }
+	
+	public List<Rectangle> getSkyline() {
+		long stamp = lock.readLock();
+		try {
+			List<Rectangle> res = tree.liveSkyline();
+			if (res != null) { return res; }
+		} finally { lock.unlockRead(stamp); }
+		stamp = lock.writeLock(); // The first call builds the live skyline
+		try { return tree.getSkyline(); }
+		finally { lock.unlockWrite(stamp); }
+	}
+	
+	public List<Rectangle> getPoints() { return tree.snapshot().getPoints(); }
+	
+	// Check the tree every policy.getCheckInterval() writes on the executor, and rebuild it when the policy says so.
+	// A null policy turns the checks off
+	public void setRebuildPolicy(RebuildPolicy policy, Executor executor) {
+		if (policy != null && executor == null) { throw new IllegalArgumentException("Executor cannot be null."); }
+		this.executor = executor;
+		this.policy = policy;
+	}
+	
+	public int getRebuildCount() {
+		long stamp = lock.readLock();
+		try { return rebuilds; }
+		finally { lock.unlockRead(stamp); }
+	}
+	
+	private boolean written() { // Count a write under the write lock, true if a check is due
+		writes ++;
+		RebuildPolicy p = policy;
+		if (p == null || writes - checked < p.getCheckInterval()) { return false; }
+		if (!rebuilding.compareAndSet(false, true)) { return false; }
+		checked = writes;
+		return true;
+	}
+	
+	private void scheduleCheck() {
+		final RebuildPolicy p = policy;
+		Executor e = executor;
+		if (p == null || e == null) {
+			rebuilding.set(false);
+			return;
+		}
+		try {
+			e.execute(new Runnable() {
+				@Override
+				public void run() {
+					try { check(p); }
+					finally { rebuilding.set(false); }
+				}
+			});
+		} catch (RuntimeException ex) {
+			rebuilding.set(false);
+			throw ex;
+		}
+	}
+	
+	private void check(RebuildPolicy p) {
+		if (!p.shouldRebuild(analyze())) { return; }
+		TreeSnapshot snapshot;
+		RTree scratch;
+		long stamp = lock.writeLock(); // The log starts with the first write after the snapshot
+		try {
+			snapshot = tree.snapshot();
+			scratch = tree.scratch();
+			log = new ArrayList<>();
+			logDeleted = new BitSet();
+		} finally { lock.unlockWrite(stamp); }
+		RTNode root = null;
+		try { // Off the lock, readers and writers go on
+			root = scratch.getBulkLoader().load(snapshot.getPoints());
+			tree.adopt(root);
+		} finally {
+			stamp = lock.writeLock();
+			try {
+				if (root != null && log != null) {
+					tree.swapRoot(root, scratch, log, logDeleted);
+					rebuilds ++;
+				}
+				log = null;
+				logDeleted = null;
+			} finally { lock.unlockWrite(stamp); }
+		}
+	}
+}
\ No newline at end of file
@@ -10,6 +10,9 @@ public class Constants {
 	public static final int RTREE_QUADRATIC = 1;
 	public static final int RTREE_EXPONENTIAL = 2;
 	public static final int RSTAR = 3;
+	public static final int HILBERT = 4;
+
+	public static final double RSTAR_REINSERT_FACTOR = 0.3; // Share of the entries of an overflowing node that R*-tree reinserts
 
 	public static final int NIL = -1;
 	public static final RTNode NULL = null;
@@ -0,0 +1,93 @@
+// Synthetic point sets in the unit cube, the three distributions of the skyline literature
+// Independent: every coordinate uniform. Correlated: points spread around the diagonal, good in one dimension means
+// good in the others. Anti-correlated: points spread around the plane where the coordinates sum to a constant, good
+// in one dimension means bad in another, which makes skylines large
+
+package rtree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class DataGenerator {
+	public static final int INDEPENDENT = 0;
+	public static final int CORRELATED = 1;
+	public static final int ANTI_CORRELATED = 2;
+	
+	private DataGenerator() {}
+	
+	public static List<Rectangle> generate(int distribution, int count, int dimension, long seed) {
+		if (count < 0) { throw new IllegalArgumentException("Count cannot be negative."); }
+		if (dimension < 2) { throw new IllegalArgumentException("Point dimension should be greater than 1."); }
+		Random random = new Random(seed);
+		List<Rectangle> res = new ArrayList<>(count);
+		double[] data = new double[dimension];
+		for (int i = 0; i < count; i ++) {
+			switch (distribution) {
+				case INDEPENDENT: independent(random, data); break;
+				case CORRELATED: correlated(random, data); break;
+				case ANTI_CORRELATED: antiCorrelated(random, data); break;
+				default: throw new IllegalArgumentException("Invalid distribution.");
+			}
+			res.add(new Rectangle(new Point(data)));
+		}
+		return res;
+	}
+	
+	public static List<Rectangle> independent(int count, int dimension, long seed) { return generate(INDEPENDENT, count, dimension, seed); }
+	
+	public static List<Rectangle> correlated(int count, int dimension, long seed) { return generate(CORRELATED, count, dimension, seed); }
+	
+	public static List<Rectangle> antiCorrelated(int count, int dimension, long seed) { return generate(ANTI_CORRELATED, count, dimension, seed); }
+	
+	private static void independent(Random random, double[] data) {
+		for (int d = 0; d < data.length; d ++) {
+			data[d] = random.nextDouble();
+		}
+	}
+	
+	private static void correlated(Random random, double[] data) { // A point of the diagonal, moved along pairs of dimensions
+		do {
+			double v = peak(random, data.length);
+			double spread = v <= 0.5 ? v : 1 - v;
+			for (int d = 0; d < data.length; d ++) {
+				data[d] = v;
+			}
+			for (int d = 0; d < data.length; d ++) {
+				double h = random.nextGaussian() * spread / 3;
+				data[d] += h;
+				data[(d + 1) % data.length] -= h;
+			}
+		} while (!inside(data));
+	}
+	
+	private static void antiCorrelated(Random random, double[] data) { // A point of the diagonal near its center, moved within its plane
+		do {
+			double v = 0.5 + random.nextGaussian() * 0.05;
+			double spread = v <= 0.5 ? v : 1 - v;
+			for (int d = 0; d < data.length; d ++) {
+				data[d] = v;
+			}
+			for (int d = 0; d < data.length; d ++) {
+				double h = (random.nextDouble() * 2 - 1) * spread;
+				data[d] += h;
+				data[(d + 1) % data.length] -= h;
+			}
+		} while (!inside(data));
+	}
+	
+	private static double peak(Random random, int n) { // Mean of n uniform values, peaks at 0.5
+		double sum = 0;
+		for (int i = 0; i < n; i ++) {
+			sum += random.nextDouble();
+		}
+		return sum / n;
+	}
+	
+	private static boolean inside(double[] data) {
+		for (int d = 0; d < data.length; d ++) {
+			if (data[d] < 0 || data[d] > 1) { return false; }
+		}
+		return true;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,53 @@
+// Incremental nearest neighbour search (distance browsing of Hjaltason and Samet)
+// All entries wait in one heap keyed by their mindist to the query point, a data entry at the top is nearer
+// than everything left in the tree so it is the next result. The tree must not change while browsing
+
+package rtree;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+public class DistanceBrowser implements Iterator<Rectangle> {
+	private double[] q;
+	private int dimension;
+	private PriorityQueue<NodeEntry> heap = new PriorityQueue<>();
+	private double distance = -1; // Distance of the last result
+	
+	public DistanceBrowser(RTree rtree, Point q) {
+		if (q == null) { throw new IllegalArgumentException("Point cannot be null."); }
+		if (q.getDimension() != rtree.getDimension()) { throw new IllegalArgumentException("Point dimension different than RTree dimension."); }
+		this.q = q.getData();
+		dimension = rtree.getDimension();
+		push(rtree.getRoot());
+	}
+	
+	@Override
+	public boolean hasNext() {
+		advance();
+		return !heap.isEmpty();
+	}
+	
+	@Override
+	public Rectangle next() {
+		advance();
+		if (heap.isEmpty()) { throw new NoSuchElementException(); }
+		NodeEntry e = heap.poll();
+		distance = Math.sqrt(e.key);
+		return e.getData();
+	}
+	
+	public double getDistance() { return distance; } // Euclidean distance of the last result to the query point
+	
+	private void advance() { // Expand the index entries till a data entry is at the top
+		while (!heap.isEmpty() && !heap.peek().isData()) {
+			push(heap.poll().getChild());
+		}
+	}
+	
+	private void push(RTNode node) {
+		for (int i = 0; i < node.usedSpace; i ++) {
+			heap.add(new NodeEntry(node, i, Geometry.mindist(q, node.lows, node.highs, i * dimension, dimension)));
+		}
+	}
+}
\ No newline at end of file
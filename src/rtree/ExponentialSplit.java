@@ -0,0 +1,117 @@
+// Exponential split, tries the valid distributions of the entries of an overflowing node into two groups
+// and takes the one with the least overlap between the groups, then the least total area, then the least total margin.
+// Points on a line have no area, without the margin the groups of point data come out as long slivers
+// The enumeration is depth first over the bitmask of the first group. The overlap, areas and margins of the partial groups
+// only grow as entries are added, so a branch is cut off as soon as they reach the best distribution found so far,
+// starting from the quadratic split. The search is exponential in the node size, the trees only take capacities up to
+// MAX_CAPACITY with it
+
+package rtree;
+
+public class ExponentialSplit {
+	public static final int MAX_CAPACITY = 16; // Limit of the exhaustive search, the RTree constructor rejects larger nodes
+	
+	private RTNode node;
+	private int dimension;
+	private int total;
+	private int minSize;
+	private double[] groupLows; // Rectangles of the two groups at each depth, groups interleaved
+	private double[] groupHighs;
+	private long bestMask; // Bit i set if entry i is in the first group
+	private double bestArea;
+	private double bestOverlap;
+	private double bestMargin;
+	
+	public ExponentialSplit(RTNode node) {
+		this.node = node;
+		dimension = node.dimension;
+		total = node.usedSpace + 1;
+		minSize = node.getMinSplitSize(total);
+	}
+	
+	public int split() { // The overflowing entry must already be stored at index usedSpace, the groups are left as by RTNode.quadraticSplit
+		int[] order = node.rtree.buffers().order;
+		int quadratic = node.quadraticSplit();
+		if (total > MAX_CAPACITY + 1) { return quadratic; }
+		bestMask = 0;
+		for (int i = 0; i < quadratic; i ++) {
+			bestMask |= 1L << order[i];
+		}
+		evaluate(bestMask);
+		
+		groupLows = new double[(total + 1) * 2 * dimension];
+		groupHighs = new double[(total + 1) * 2 * dimension];
+		// Entry 0 always goes to the first group, the mirrored distributions are the same split
+		System.arraycopy(node.lows, 0, groupLows, 2 * dimension, dimension);
+		System.arraycopy(node.highs, 0, groupHighs, 2 * dimension, dimension);
+		search(1, 1L, 1, 0);
+		
+		int n1 = Long.bitCount(bestMask);
+		int i1 = 0, i2 = n1;
+		for (int i = 0; i < total; i ++) {
+			if ((bestMask & (1L << i)) != 0) { order[i1 ++] = i; }
+			else { order[i2 ++] = i; }
+		}
+		return n1;
+	}
+	
+	// Entries before i are assigned, the rectangles of the groups after them are stored for depth i
+	private void search(int i, long mask, int n1, int n2) {
+		if (n1 + (total - i) < minSize || n2 + (total - i) < minSize) { return; } // Cannot reach the minimum any more
+		int cur = i * 2 * dimension;
+		double overlap = n1 > 0 && n2 > 0 ? Geometry.intersectArea(groupLows, groupHighs, cur, groupLows, groupHighs, cur + dimension, dimension) : 0;
+		double area = (n1 > 0 ? Geometry.area(groupLows, groupHighs, cur, dimension) : 0) + (n2 > 0 ? Geometry.area(groupLows, groupHighs, cur + dimension, dimension) : 0);
+		double margin = (n1 > 0 ? Geometry.margin(groupLows, groupHighs, cur, dimension) : 0) + (n2 > 0 ? Geometry.margin(groupLows, groupHighs, cur + dimension, dimension) : 0);
+		if (overlap > bestOverlap || (overlap == bestOverlap && (area > bestArea || (area == bestArea && margin >= bestMargin)))) {
+			return; // No better with more entries
+		}
+		if (i == total) {
+			bestOverlap = overlap;
+			bestArea = area;
+			bestMargin = margin;
+			bestMask = mask;
+			return;
+		}
+		
+		int next = cur + 2 * dimension;
+		int off = i * dimension;
+		// Entry i to the first group
+		System.arraycopy(groupLows, cur, groupLows, next, 2 * dimension);
+		System.arraycopy(groupHighs, cur, groupHighs, next, 2 * dimension);
+		Geometry.include(groupLows, groupHighs, next, node.lows, node.highs, off, dimension);
+		search(i + 1, mask | (1L << i), n1 + 1, n2);
+		// Entry i to the second group
+		System.arraycopy(groupLows, cur, groupLows, next, 2 * dimension);
+		System.arraycopy(groupHighs, cur, groupHighs, next, 2 * dimension);
+		if (n2 == 0) {
+			System.arraycopy(node.lows, off, groupLows, next + dimension, dimension);
+			System.arraycopy(node.highs, off, groupHighs, next + dimension, dimension);
+		} else { Geometry.include(groupLows, groupHighs, next + dimension, node.lows, node.highs, off, dimension); }
+		search(i + 1, mask, n1, n2 + 1);
+	}
+	
+	private void evaluate(long mask) { // Overlap, area and margin of the distribution
+		double[] low1 = null, high1 = null, low2 = null, high2 = null;
+		for (int i = 0; i < total; i ++) {
+			int off = i * dimension;
+			if ((mask & (1L << i)) != 0) {
+				if (low1 == null) {
+					low1 = new double[dimension];
+					high1 = new double[dimension];
+					System.arraycopy(node.lows, off, low1, 0, dimension);
+					System.arraycopy(node.highs, off, high1, 0, dimension);
+				} else { Geometry.include(low1, high1, 0, node.lows, node.highs, off, dimension); }
+			} else {
+				if (low2 == null) {
+					low2 = new double[dimension];
+					high2 = new double[dimension];
+					System.arraycopy(node.lows, off, low2, 0, dimension);
+					System.arraycopy(node.highs, off, high2, 0, dimension);
+				} else { Geometry.include(low2, high2, 0, node.lows, node.highs, off, dimension); }
+			}
+		}
+		bestArea = Geometry.area(low1, high1, 0, dimension) + Geometry.area(low2, high2, 0, dimension);
+		bestOverlap = Geometry.intersectArea(low1, high1, 0, low2, high2, 0, dimension);
+		bestMargin = Geometry.margin(low1, high1, 0, dimension) + Geometry.margin(low2, high2, 0, dimension);
+	}
+}
\ No newline at end of file
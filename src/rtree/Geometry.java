@@ -0,0 +1,120 @@
+// Geometry on raw coordinates, shared by Rectangle and the nodes
+// A box is given by its low and high arrays plus the offset of its first coordinate, so that
+// entries stored in the flat arrays of a node and the corners of a Rectangle can be mixed without allocation
+
+package rtree;
+
+public class Geometry {
+	private Geometry() {}
+	
+	public static double area(double[] low, double[] high, int off, int dim) {
+		double area = 1;
+		for (int d = 0; d < dim; d ++) {
+			area *= high[off + d] - low[off + d];
+		}
+		return area;
+	}
+	
+	public static double margin(double[] low, double[] high, int off, int dim) { // Sum of the edge lengths
+		double margin = 0;
+		for (int d = 0; d < dim; d ++) {
+			margin += high[off + d] - low[off + d];
+		}
+		return margin;
+	}
+	
+	public static double unionArea(double[] low1, double[] high1, int off1, double[] low2, double[] high2, int off2, int dim) {
+		double area = 1;
+		for (int d = 0; d < dim; d ++) {
+			area *= Math.max(high1[off1 + d], high2[off2 + d]) - Math.min(low1[off1 + d], low2[off2 + d]);
+		}
+		return area;
+	}
+	
+	// Area enlargement of box 1 when it has to cover box 2 as well
+	public static double enlargement(double[] low1, double[] high1, int off1, double[] low2, double[] high2, int off2, int dim) {
+		return unionArea(low1, high1, off1, low2, high2, off2, dim) - area(low1, high1, off1, dim);
+	}
+	
+	public static double intersectArea(double[] low1, double[] high1, int off1, double[] low2, double[] high2, int off2, int dim) {
+		double area = 1;
+		for (int d = 0; d < dim; d ++) {
+			double edge = Math.min(high1[off1 + d], high2[off2 + d]) - Math.max(low1[off1 + d], low2[off2 + d]);
+			if (edge <= 0) { return 0; }
+			area *= edge;
+		}
+		return area;
+	}
+	
+	public static boolean intersects(double[] low1, double[] high1, int off1, double[] low2, double[] high2, int off2, int dim) {
+		for (int d = 0; d < dim; d ++) {
+			if (low1[off1 + d] > high2[off2 + d] || high1[off1 + d] < low2[off2 + d]) { return false; }
+		}
+		return true;
+	}
+	
+	// Judge if box 2 is inside box 1
+	public static boolean contains(double[] low1, double[] high1, int off1, double[] low2, double[] high2, int off2, int dim) {
+		for (int d = 0; d < dim; d ++) {
+			if (low2[off2 + d] < low1[off1 + d] || high2[off2 + d] > high1[off1 + d]) { return false; }
+		}
+		return true;
+	}
+	
+	public static boolean equals(double[] low1, double[] high1, int off1, double[] low2, double[] high2, int off2, int dim) {
+		for (int d = 0; d < dim; d ++) {
+			if (low1[off1 + d] != low2[off2 + d] || high1[off1 + d] != high2[off2 + d]) { return false; }
+		}
+		return true;
+	}
+	
+	// Enlarge box 1 so that it covers box 2
+	public static void include(double[] low1, double[] high1, int off1, double[] low2, double[] high2, int off2, int dim) {
+		for (int d = 0; d < dim; d ++) {
+			if (low2[off2 + d] < low1[off1 + d]) { low1[off1 + d] = low2[off2 + d]; }
+			if (high2[off2 + d] > high1[off1 + d]) { high1[off1 + d] = high2[off2 + d]; }
+		}
+	}
+	
+	// Judge if point p dominates point q, no coordinate of p is larger
+	public static boolean dominates(double[] p, int pOff, double[] q, int qOff, int dim) {
+		for (int d = 0; d < dim; d ++) {
+			if (p[pOff + d] > q[qOff + d]) { return false; }
+		}
+		return true;
+	}
+	
+	public static double mindist(double[] low, int off, int dim) { // Square of mindist of the box to point o, same as Point.getDistance
+		double res = 0;
+		for (int d = 0; d < dim; d ++) {
+			res += low[off + d] * low[off + d];
+		}
+		return res;
+	}
+	
+	public static double mindist(double[] q, double[] low, double[] high, int off, int dim) { // Square of mindist of the box to point q
+		double res = 0;
+		for (int d = 0; d < dim; d ++) {
+			double diff = 0;
+			if (q[d] < low[off + d]) { diff = low[off + d] - q[d]; }
+			else if (q[d] > high[off + d]) { diff = q[d] - high[off + d]; }
+			res += diff * diff;
+		}
+		return res;
+	}
+	
+	// Square of minmaxdist of Roussopoulos, the box holds an object within this distance of q if every face touches one
+	public static double minmaxdist(double[] q, double[] low, double[] high, int off, int dim) {
+		double res = Double.POSITIVE_INFINITY;
+		for (int d = 0; d < dim; d ++) { // The nearer face on dimension d, the farther one on the others
+			double sum = 0; // Summed in the order of mindist, so the bound is never below the computed distance of that object
+			for (int j = 0; j < dim; j ++) {
+				double mid = (low[off + j] + high[off + j]) / 2;
+				double r = j == d ? (q[j] <= mid ? low[off + j] : high[off + j]) : (q[j] >= mid ? low[off + j] : high[off + j]);
+				sum += (q[j] - r) * (q[j] - r);
+			}
+			res = Math.min(res, sum);
+		}
+		return res;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,99 @@
+// Maps the center of a rectangle to its position on a Hilbert curve through the data space
+// The coordinates are scaled into a grid of 2^bits cells per dimension, bits * dimension is at most 63
+// If the data space is unknown, the sign, exponent and leading mantissa bits of the coordinates are used as grid instead
+
+package rtree;
+
+import java.util.Arrays;
+
+public class HilbertCurve {
+	private int dimension;
+	private int bits; // Grid resolution of each dimension
+	private double[] low; // Data space, null if unknown
+	private double[] high;
+	
+	public HilbertCurve(int dimension) {
+		this(dimension, null, null);
+	}
+	
+	public HilbertCurve(int dimension, double[] low, double[] high) {
+		if (dimension < 1) { throw new IllegalArgumentException("Dimension should be positive."); }
+		this.dimension = dimension;
+		bits = Math.max(1, Math.min(31, 63 / dimension));
+		this.low = low;
+		this.high = high;
+	}
+	
+	public static HilbertCurve bounding(int dimension, double[] lows, double[] highs, int n) { // Curve over the space covered by n boxes in flat arrays
+		if (n == 0) { return new HilbertCurve(dimension); }
+		double[] low = Arrays.copyOf(lows, dimension);
+		double[] high = Arrays.copyOf(highs, dimension);
+		for (int i = 1; i < n; i ++) {
+			Geometry.include(low, high, 0, lows, highs, i * dimension, dimension);
+		}
+		return new HilbertCurve(dimension, low, high);
+	}
+	
+	double[] lows() { return low; } // Corners of the data space, null if unknown
+	
+	double[] highs() { return high; }
+	
+	public long index(Rectangle rec) { return index(rec.lows(), rec.highs(), 0); }
+	
+	public long index(double[] lows, double[] highs, int off) { // Hilbert value of the center of the box
+		long[] x = new long[dimension];
+		for (int d = 0; d < dimension; d ++) {
+			x[d] = quantize((lows[off + d] + highs[off + d]) / 2, d);
+		}
+		return index(x);
+	}
+	
+	private long quantize(double v, int d) { // Grid cell of the coordinate on dimension d
+		long max = (1L << bits) - 1;
+		if (low == null) { // Order-preserving bit pattern of the double
+			long b = Double.doubleToLongBits(v);
+			b = b < 0 ? ~b : b | Long.MIN_VALUE;
+			return b >>> (64 - bits);
+		}
+		double range = high[d] - low[d];
+		if (range <= 0) { return 0; }
+		double t = (v - low[d]) / range;
+		if (t <= 0) { return 0; }
+		if (t >= 1) { return max; }
+		return (long) (t * max);
+	}
+	
+	// Skilling's transform of grid coordinates into the transposed Hilbert index, the bits are then interleaved
+	private long index(long[] x) {
+		long m = 1L << (bits - 1);
+		for (long q = m; q > 1; q >>= 1) { // Inverse undo
+			long p = q - 1;
+			for (int i = 0; i < dimension; i ++) {
+				if ((x[i] & q) != 0) { x[0] ^= p; }
+				else {
+					long t = (x[0] ^ x[i]) & p;
+					x[0] ^= t;
+					x[i] ^= t;
+				}
+			}
+		}
+		for (int i = 1; i < dimension; i ++) { // Gray encode
+			x[i] ^= x[i - 1];
+		}
+		long t = 0;
+		for (long q = m; q > 1; q >>= 1) {
+			if ((x[dimension - 1] & q) != 0) { t ^= q - 1; }
+		}
+		for (int i = 0; i < dimension; i ++) {
+			x[i] ^= t;
+		}
+		
+		long res = 0;
+		for (int b = bits - 1; b >= 0; b --) {
+			for (int i = 0; i < dimension; i ++) {
+				res = (res << 1) | ((x[i] >>> b) & 1);
+			}
+		}
+		return res;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,57 @@
+// Hilbert packed bulk loading
+// The data are sorted by the Hilbert value of their centers, the upper levels keep the order of the nodes below,
+// which is also the order a Hilbert tree keeps its entries in
+
+package rtree;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+public class HilbertLoader extends BulkLoader {
+	private HilbertCurve curve; // If null, the curve of a Hilbert tree or one over the bounds of the data is used
+	
+	public HilbertLoader(RTree rtree) { this(rtree, null); }
+	
+	public HilbertLoader(RTree rtree, HilbertCurve curve) {
+		super(rtree);
+		this.curve = curve;
+	}
+	
+	@Override
+	protected int[] sort(double[] centers, int n, int level) {
+		int[] res = new int[n];
+		if (level > 0) { // Nodes are already in Hilbert order
+			for (int i = 0; i < n; i ++) {
+				res[i] = i;
+			}
+			return res;
+		}
+		HilbertCurve c = curve != null ? curve : rtree.getHilbertCurve();
+		if (c == null) { c = new HilbertCurve(dimension, bounds(centers, n, true), bounds(centers, n, false)); }
+		final long[] values = new long[n];
+		Integer[] order = new Integer[n];
+		for (int i = 0; i < n; i ++) {
+			values[i] = c.index(centers, centers, i * dimension);
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) { return Long.compare(values[a], values[b]); }
+		});
+		for (int i = 0; i < n; i ++) {
+			res[i] = order[i];
+		}
+		return res;
+	}
+	
+	private double[] bounds(double[] centers, int n, boolean min) { // Lowest or highest center on each dimension
+		double[] res = new double[dimension];
+		System.arraycopy(centers, 0, res, 0, dimension);
+		for (int i = 1; i < n; i ++) {
+			for (int d = 0; d < dimension; d ++) {
+				res[d] = min ? Math.min(res[d], centers[i * dimension + d]) : Math.max(res[d], centers[i * dimension + d]);
+			}
+		}
+		return res;
+	}
+}
\ No newline at end of file
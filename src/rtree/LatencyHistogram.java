@@ -0,0 +1,70 @@
+// Histogram of latencies in nanoseconds with a bounded relative error
+// Each power of two is cut into 8 buckets, so a percentile is off by at most an eighth, values below 8 are exact
+
+package rtree;
+
+public class LatencyHistogram {
+	private static final int SUB_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	
+	private long[] counts = new long[(64 - SUB_BITS + 1) * SUB_BUCKETS];
+	private long count;
+	private long total;
+	private long max;
+	
+	public void record(long nanos) {
+		if (nanos < 0) { nanos = 0; }
+		counts[bucket(nanos)] ++;
+		count ++;
+		total += nanos;
+		if (nanos > max) { max = nanos; }
+	}
+	
+	public long getCount() { return count; }
+	
+	public long getMax() { return max; }
+	
+	public double getMean() { return count == 0 ? 0 : (double) total / count; }
+	
+	public long getPercentile(double p) { // Upper bound of the bucket holding the percentile, p from 0 to 100
+		if (p < 0 || p > 100) { throw new IllegalArgumentException("Percentile should be between 0 and 100."); }
+		if (count == 0) { return 0; }
+		long rank = Math.max(1, (long) Math.ceil(count * p / 100));
+		long seen = 0;
+		for (int i = 0; i < counts.length; i ++) {
+			seen += counts[i];
+			if (seen >= rank) { return Math.min(max, upperBound(i)); }
+		}
+		return max;
+	}
+	
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < counts.length; i ++) {
+			counts[i] += other.counts[i];
+		}
+		count += other.count;
+		total += other.total;
+		max = Math.max(max, other.max);
+	}
+	
+	public LatencyHistogram copy() {
+		LatencyHistogram res = new LatencyHistogram();
+		res.add(this);
+		return res;
+	}
+	
+	private static int bucket(long v) {
+		if (v < SUB_BUCKETS) { return (int) v; }
+		int exp = 63 - Long.numberOfLeadingZeros(v); // At least SUB_BITS
+		int sub = (int) (v >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return (exp - SUB_BITS + 1) * SUB_BUCKETS + sub;
+	}
+	
+	private static long upperBound(int i) {
+		if (i < SUB_BUCKETS) { return i; }
+		int exp = i / SUB_BUCKETS + SUB_BITS - 1;
+		long sub = i % SUB_BUCKETS;
+		long bound = ((SUB_BUCKETS + sub + 1) << (exp - SUB_BITS)) - 1;
+		return bound < 0 ? Long.MAX_VALUE : bound;
+	}
+}
\ No newline at end of file
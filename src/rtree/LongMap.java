@@ -0,0 +1,98 @@
+// Hash map from long keys to objects without boxing, open addressing with linear probing
+// Key 0 marks an empty slot and can't be stored. A removal shifts the following entries of its run back, so no
+// tombstones are left behind and lookups stay short under heavy insert and delete churn
+
+package rtree;
+
+import java.util.Arrays;
+
+public class LongMap<V> {
+	private long[] keys;
+	private Object[] values;
+	private int size;
+	private int mask;
+	
+	public LongMap() { this(16); }
+	
+	public LongMap(int expected) {
+		int n = 16;
+		while (n < expected * 2) { n <<= 1; } // At most half full
+		keys = new long[n];
+		values = new Object[n];
+		mask = n - 1;
+	}
+	
+	public int size() { return size; }
+	
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		for (int i = slot(key); keys[i] != 0; i = (i + 1) & mask) {
+			if (keys[i] == key) { return (V) values[i]; }
+		}
+		return null;
+	}
+	
+	public void put(long key, V value) {
+		if (key == 0) { throw new IllegalArgumentException("Key cannot be 0."); }
+		int i = slot(key);
+		while (keys[i] != 0) {
+			if (keys[i] == key) {
+				values[i] = value;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = value;
+		if (++ size * 2 > keys.length) { grow(); }
+	}
+	
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		if (key == 0) { return null; }
+		int i = slot(key);
+		while (keys[i] != key) {
+			if (keys[i] == 0) { return null; }
+			i = (i + 1) & mask;
+		}
+		V res = (V) values[i];
+		size --;
+		for (int j = (i + 1) & mask; keys[j] != 0; j = (j + 1) & mask) { // Move back the entries that can't be found past the hole
+			int home = slot(keys[j]);
+			if (((j - home) & mask) >= ((j - i) & mask)) {
+				keys[i] = keys[j];
+				values[i] = values[j];
+				i = j;
+			}
+		}
+		keys[i] = 0;
+		values[i] = null;
+		return res;
+	}
+	
+	public void clear() {
+		Arrays.fill(keys, 0);
+		Arrays.fill(values, null);
+		size = 0;
+	}
+	
+	private int slot(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+	
+	private void grow() {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		keys = new long[oldKeys.length * 2];
+		values = new Object[oldKeys.length * 2];
+		mask = keys.length - 1;
+		for (int i = 0; i < oldKeys.length; i ++) {
+			if (oldKeys[i] == 0) { continue; }
+			int j = slot(oldKeys[i]);
+			while (keys[j] != 0) { j = (j + 1) & mask; }
+			keys[j] = oldKeys[i];
+			values[j] = oldValues[i];
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,8 @@
+// Receives the stats of every operation a tree with metrics on finishes, for example to export them
+// Called in the thread that ran the operation, so it should be quick
+
+package rtree;
+
+public interface MetricsListener {
+	void operationFinished(QueryStats stats);
+}
\ No newline at end of file
@@ -0,0 +1,27 @@
+// Entry of a node kept in the heap of best-first traversals (like BBS)
+// If the node is a leaf, the entry is a data point, otherwise it stands for the child at the index
+
+package rtree;
+
+public class NodeEntry implements Comparable<NodeEntry> {
+	protected RTNode node;
+	protected int index;
+	protected double key; // The value to order the heap by, usually the mindist of the entry
+	
+	public NodeEntry(RTNode node, int index, double key) {
+		this.node = node;
+		this.index = index;
+		this.key = key;
+	}
+	
+	public boolean isData() { return node.isLeaf(); }
+	
+	public Rectangle getData() { return ((RTDataNode) node).getData(index); }
+	
+	public RTNode getChild() { return ((RTDirNode) node).getChild(index); }
+	
+	public int getOffset() { return index * node.dimension; } // Offset of the entry in the coordinate arrays of the node
+	
+	@Override
+	public int compareTo(NodeEntry e) { return Double.compare(key, e.key); }
+}
\ No newline at end of file
@@ -0,0 +1,164 @@
+// File of fixed-size pages for a paged tree, a page is addressed by its number
+// Page 0 is the header: the layout of the file followed by the data of the tree stored in it. Freed pages are chained
+// through their first bytes and handed out again before the file grows
+
+package rtree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class PageFile implements Closeable {
+	public static final int MAGIC = 0x52545047; // "RTPG"
+	public static final int VERSION = 2; // 2: the index pages of a paged tree hold the counts of their subtrees
+	public static final int HEADER = 20; // Bytes of page 0 used by the file itself, the tree data follow
+	
+	private FileChannel channel;
+	private int pageSize;
+	private int pageCount; // Pages in the file, with the header
+	private int firstFree = Constants.NIL; // Head of the chain of free pages
+	private int freeCount;
+	private ByteBuffer link = ByteBuffer.allocate(4); // Next free page, stored at the start of a free page
+	
+	private PageFile(FileChannel channel, int pageSize) {
+		this.channel = channel;
+		this.pageSize = pageSize;
+	}
+	
+	public static PageFile create(Path path, int pageSize) throws IOException { // A new empty file, an existing one is overwritten
+		if (path == null) { throw new IllegalArgumentException("Path cannot be null."); }
+		if (pageSize < HEADER + 4) { throw new IllegalArgumentException("Page size is too small."); }
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		PageFile file = new PageFile(channel, pageSize);
+		file.pageCount = 1;
+		file.writeHeader();
+		return file;
+	}
+	
+	public static PageFile open(Path path) throws IOException {
+		if (path == null) { throw new IllegalArgumentException("Path cannot be null."); }
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		ByteBuffer buf = ByteBuffer.allocate(HEADER);
+		readFully(channel, buf, 0);
+		buf.flip();
+		if (buf.remaining() < HEADER || buf.getInt() != MAGIC) {
+			channel.close();
+			throw new IllegalArgumentException("Not a page file.");
+		}
+		if (buf.getInt() != VERSION) {
+			channel.close();
+			throw new IllegalArgumentException("Unsupported page file version.");
+		}
+		PageFile file = new PageFile(channel, buf.getInt());
+		file.pageCount = buf.getInt();
+		file.firstFree = buf.getInt();
+		for (int page = file.firstFree; page != Constants.NIL; page = file.nextFree(page)) {
+			file.freeCount ++;
+		}
+		return file;
+	}
+	
+	public int getPageSize() { return pageSize; }
+	
+	public int getPageCount() { return pageCount; }
+	
+	public int getFreeCount() { return freeCount; }
+	
+	public int allocate() throws IOException { // A free page if there is one, otherwise a new page at the end
+		if (firstFree == Constants.NIL) { return pageCount ++; }
+		int page = firstFree;
+		firstFree = nextFree(page);
+		freeCount --;
+		return page;
+	}
+	
+	public void free(int page) throws IOException {
+		check(page);
+		link.clear();
+		link.putInt(firstFree);
+		link.flip();
+		writeFully(channel, link, (long) page * pageSize);
+		firstFree = page;
+		freeCount ++;
+	}
+	
+	public void read(int page, ByteBuffer buf) throws IOException { // Fill the buffer from the start of the page, ready to be read
+		check(page);
+		buf.clear();
+		buf.limit(pageSize);
+		readFully(channel, buf, (long) page * pageSize);
+		while (buf.hasRemaining()) { // Allocated but never written
+			buf.put((byte) 0);
+		}
+		buf.flip();
+	}
+	
+	public void write(int page, ByteBuffer buf) throws IOException { // Write the buffer from its position on, at most a page
+		check(page);
+		if (buf.remaining() > pageSize) { throw new IllegalArgumentException("Data larger than a page."); }
+		writeFully(channel, buf, (long) page * pageSize);
+	}
+	
+	public void readMeta(ByteBuffer buf) throws IOException { // The tree data of the header page
+		buf.clear();
+		buf.limit(pageSize - HEADER);
+		readFully(channel, buf, HEADER);
+		buf.flip();
+	}
+	
+	public void writeMeta(ByteBuffer buf) throws IOException {
+		if (buf.remaining() > pageSize - HEADER) { throw new IllegalArgumentException("Data larger than the header page."); }
+		writeFully(channel, buf, HEADER);
+	}
+	
+	public void sync() throws IOException { // Write the layout and force everything to the disk
+		writeHeader();
+		channel.force(true);
+	}
+	
+	@Override
+	public void close() throws IOException {
+		if (!channel.isOpen()) { return; }
+		writeHeader();
+		channel.close();
+	}
+	
+	private void writeHeader() throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(HEADER);
+		buf.putInt(MAGIC);
+		buf.putInt(VERSION);
+		buf.putInt(pageSize);
+		buf.putInt(pageCount);
+		buf.putInt(firstFree);
+		buf.flip();
+		writeFully(channel, buf, 0);
+	}
+	
+	private int nextFree(int page) throws IOException {
+		link.clear();
+		readFully(channel, link, (long) page * pageSize);
+		link.flip();
+		return link.getInt();
+	}
+	
+	private void check(int page) {
+		if (page <= 0 || page >= pageCount) { throw new IllegalArgumentException("Invalid page " + page + "."); }
+	}
+	
+	private static void readFully(FileChannel channel, ByteBuffer buf, long pos) throws IOException { // Stops early at the end of the file
+		while (buf.hasRemaining()) {
+			int n = channel.read(buf, pos);
+			if (n < 0) { return; }
+			pos += n;
+		}
+	}
+	
+	private static void writeFully(FileChannel channel, ByteBuffer buf, long pos) throws IOException {
+		while (buf.hasRemaining()) {
+			pos += channel.write(buf, pos);
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,33 @@
+// Takes the place of a child in an index node of a paged tree while the child is only on its page
+// The stub has no entries, RTDirNode.getChild reads the node and puts it in place of the stub
+
+package rtree;
+
+import java.util.List;
+
+public class PageStub extends RTNode {
+	public PageStub(RTree rtree, RTNode parent, int level, int page) { super(rtree, parent, level, page); }
+	
+	private IllegalStateException notLoaded() { return new IllegalStateException("Node is not loaded."); }
+	
+	@Override
+	protected RTNode copy() { throw notLoaded(); }
+	
+	@Override
+	protected Object getPayload(int i) { throw notLoaded(); }
+	
+	@Override
+	protected void insertPayload(int i, Object payload) { throw notLoaded(); }
+	
+	@Override
+	protected RTNode newSibling() { throw notLoaded(); }
+	
+	@Override
+	protected RTDataNode chooseLeaf(double[] low, double[] high, int off) { throw notLoaded(); }
+	
+	@Override
+	protected RTDataNode findLeaf(Rectangle rec) { throw notLoaded(); }
+	
+	@Override
+	protected void searchLeaf(Rectangle rec, List<Rectangle> res) { throw notLoaded(); }
+}
\ No newline at end of file
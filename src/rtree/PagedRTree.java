@@ -0,0 +1,378 @@
+// R-tree whose nodes live in a page file, only the nodes kept by the buffer pool are in memory
+// A child that is not in memory is a PageStub in the children of its parent, RTDirNode.getChild reads it through the pool.
+// An update marks and pins the nodes it changes, the others may be evicted meanwhile. At its end the new nodes get
+// pages, the changed ones are unpinned and left to the pool to write back and the pages of the nodes that left the
+// tree are freed. A bulk load writes every node out as soon as it is packed. Queries and updates are those of RTree
+// Not thread-safe, and snapshots are not supported. Neither are entry ids: the id-to-leaf map of RTree is in memory and
+// holds a node per id, which would keep every leaf with ids on the heap, and the pages have no room for the ids
+
+package rtree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+public class PagedRTree extends RTree implements Closeable {
+	private PageFile file;
+	private BufferPool pool;
+	private ByteBuffer buffer; // One page
+	private Set<RTNode> changed = Collections.newSetFromMap(new IdentityHashMap<RTNode, Boolean>()); // Nodes changed by the running update
+	private List<RTNode> pinned = new ArrayList<>(); // The changed nodes that were in the pool
+	private int[] released = new int[16]; // Pages of the nodes that left the tree, freed at the end of the update
+	private int releasedCount;
+	private int[] kept = new int[16]; // Pages of the children of the changed and new nodes in the tree, sorted
+	private int keptCount;
+	private RTNode oldRoot; // Root when the running update began
+	private int updates; // Depth of the running updates, insertAll may bulk load for example
+	private boolean loading; // A bulk load of the whole tree is running, its nodes are written out as they are packed
+	
+	public PagedRTree(Path path, int cacheSize, int capacity, double fillFactor, int treeType, int dimension) throws IOException { // A new empty tree, an existing file is overwritten
+		super(capacity, fillFactor, treeType, dimension);
+		file = PageFile.create(path, pageSize(capacity, dimension));
+		pool = new BufferPool(this, cacheSize);
+		buffer = ByteBuffer.allocate(file.getPageSize());
+		register(getRoot());
+		flush();
+	}
+	
+	private PagedRTree(PageFile file, int cacheSize, int capacity, double fillFactor, int treeType, int dimension) {
+		super(capacity, fillFactor, treeType, dimension);
+		this.file = file;
+		pool = new BufferPool(this, cacheSize);
+		buffer = ByteBuffer.allocate(file.getPageSize());
+	}
+	
+	public static PagedRTree open(Path path, int cacheSize) throws IOException { // The tree saved in the file by flush or close
+		PageFile file = PageFile.open(path);
+		ByteBuffer meta = ByteBuffer.allocate(file.getPageSize());
+		file.readMeta(meta);
+		int capacity = meta.getInt();
+		double fillFactor = meta.getDouble();
+		int treeType = meta.getInt();
+		int dimension = meta.getInt();
+		int rootPage = meta.getInt();
+		PagedRTree tree = new PagedRTree(file, cacheSize, capacity, fillFactor, treeType, dimension);
+		if (meta.get() == 1) { // Data space of the Hilbert curve
+			double[] low = new double[dimension];
+			double[] high = new double[dimension];
+			for (int d = 0; d < dimension; d ++) {
+				low[d] = meta.getDouble();
+				high[d] = meta.getDouble();
+			}
+			tree.setHilbertCurve(new HilbertCurve(dimension, low, high));
+		}
+		RTNode root = tree.read(rootPage);
+		tree.setRoot(root);
+		tree.pool.add(root, false);
+		return tree;
+	}
+	
+	private static int pageSize(int capacity, int dimension) { // Level, fill, coordinates, Hilbert values, child pages and counts
+		int node = 8 + capacity * (16 * dimension + 8 + 8);
+		int meta = PageFile.HEADER + 25 + 16 * dimension;
+		return Math.max(node, meta);
+	}
+	
+	public BufferPool getBufferPool() { return pool; }
+	
+	public PageFile getPageFile() { return file; }
+	
+	public void flush() { // Write all changed nodes and the header, the file then holds the tree
+		if (updates > 0) { throw new IllegalStateException("Update is running."); }
+		pool.flush();
+		try {
+			ByteBuffer meta = ByteBuffer.allocate(file.getPageSize() - PageFile.HEADER);
+			meta.putInt(getCapacity());
+			meta.putDouble(getFillFactor());
+			meta.putInt(getTreeType());
+			meta.putInt(getDimension());
+			meta.putInt(getRoot().page);
+			HilbertCurve curve = getHilbertCurve();
+			if (curve != null && curve.lows() != null) {
+				meta.put((byte) 1);
+				for (int d = 0; d < getDimension(); d ++) {
+					meta.putDouble(curve.lows()[d]);
+					meta.putDouble(curve.highs()[d]);
+				}
+			} else { meta.put((byte) 0); }
+			meta.flip();
+			file.writeMeta(meta);
+			file.sync();
+		} catch (IOException e) { throw new UncheckedIOException(e); }
+	}
+	
+	@Override
+	public void close() throws IOException {
+		flush();
+		file.close();
+	}
+	
+	@Override
+	public List<Rectangle> parallelSkyline() { return skyline(); } // The buffer pool is for one thread, the partitions are not read in parallel
+	
+	@Override
+	public List<Rectangle> parallelSkyline(ForkJoinPool pool) { return skyline(); }
+	
+	@Override
+	public void enableSnapshots() { throw new IllegalStateException("Paged tree does not support snapshots."); }
+	
+	@Override
+	public long insertWithId(Rectangle rec) { throw new IllegalStateException("Paged tree does not support entry ids."); } // See the top of the file
+	
+	@Override
+	public void bulkLoad(List<Rectangle> recs, BulkLoader loader) {
+		loading = true;
+		try { super.bulkLoad(recs, loader); }
+		finally { loading = false; }
+	}
+	
+	@Override
+	protected void beginUpdate() {
+		if (updates ++ == 0) { oldRoot = getRoot(); }
+		super.beginUpdate();
+	}
+	
+	@Override
+	protected void endUpdate() {
+		super.endUpdate();
+		if (-- updates == 0) {
+			pool.hold(); // Nothing may be evicted while the nodes are sorted out
+			finish();
+			pool.release();
+		}
+	}
+	
+	@Override
+	protected RTNode writable(RTNode node) { // Mark the node and its path and keep them in memory, they are written back later
+		RTNode n = node;
+		while (n != null && changed.add(n)) {
+			if (pool.contains(n)) {
+				pool.pin(n);
+				pinned.add(n);
+			}
+			n = n.parent;
+		}
+		return node;
+	}
+	
+	@Override
+	protected void reinsert(RTNode node) { // A child taken out by a forced reinsert
+		if (node.page == Constants.NIL) { // New, not in the pool
+			super.reinsert(node);
+			return;
+		}
+		if (!pool.contains(node)) { pool.add(node, false); } // Evicted since it was taken out
+		pool.pin(node); // Till it is in its new parent
+		super.reinsert(node);
+		pool.unpin(node);
+	}
+	
+	@Override
+	protected RTNode packed(RTNode node) { // Write the node of a bulk load out at once, its parent only holds a stub
+		if (!loading) { return node; }
+		try {
+			node.page = file.allocate();
+		} catch (IOException e) { throw new UncheckedIOException(e); }
+		write(node);
+		return new PageStub(this, Constants.NULL, node.level, node.page);
+	}
+	
+	@Override
+	protected RTNode fetch(RTDirNode parent, int index) {
+		RTNode child = parent.children.get(index);
+		if (!(child instanceof PageStub)) {
+			pool.access(child);
+			return child;
+		}
+		RTNode node = pool.get(child.page);
+		boolean miss = node == null;
+		if (miss) {
+			node = read(child.page);
+			node.parent = parent;
+		}
+		// An evicted node may still be used by a query, the children it reads are not put into it
+		if (updates > 0 || parent == getRoot() || pool.contains(parent)) {
+			parent.children.set(index, node);
+			node.parent = parent;
+		}
+		if (miss) { pool.add(node, false); }
+		return node;
+	}
+	
+	protected boolean isEvictable(RTNode node) { // Not the root, and no children in memory below it
+		if (node == getRoot()) { return false; }
+		if (!node.isLeaf()) {
+			RTDirNode dir = (RTDirNode) node;
+			for (int i = 0; i < dir.usedSpace; i ++) {
+				if (!(dir.children.get(i) instanceof PageStub)) { return false; }
+			}
+		}
+		return true;
+	}
+	
+	protected void unload(RTNode node) { // Put a stub in place of an evicted node
+		RTNode parent = node.parent;
+		if (parent == null) { return; }
+		List<RTNode> children = ((RTDirNode) parent).children;
+		for (int i = 0; i < children.size(); i ++) {
+			if (children.get(i) == node) {
+				children.set(i, new PageStub(this, parent, node.level, node.page));
+				return;
+			}
+		}
+	}
+	
+	protected RTNode read(int page) {
+		try {
+			file.read(page, buffer);
+		} catch (IOException e) { throw new UncheckedIOException(e); }
+		int level = buffer.getInt();
+		int n = buffer.getInt();
+		int dimension = getDimension();
+		RTNode node = level == 0 ? new RTDataNode(this, Constants.NULL) : new RTDirNode(this, Constants.NULL, level);
+		for (int i = 0; i < n * dimension; i ++) {
+			node.lows[i] = buffer.getDouble();
+		}
+		for (int i = 0; i < n * dimension; i ++) {
+			node.highs[i] = buffer.getDouble();
+		}
+		if (node.hilberts != null) {
+			for (int i = 0; i < n; i ++) {
+				node.hilberts[i] = buffer.getLong();
+			}
+		}
+		node.usedSpace = n;
+		node.page = page;
+		if (!node.isLeaf()) {
+			RTDirNode dir = (RTDirNode) node;
+			for (int i = 0; i < n; i ++) {
+				dir.children.add(new PageStub(this, dir, level - 1, buffer.getInt()));
+			}
+			for (int i = 0; i < n; i ++) {
+				dir.counts[i] = buffer.getInt();
+			}
+		}
+		return node;
+	}
+	
+	protected void write(RTNode node) {
+		int dimension = getDimension();
+		buffer.clear();
+		buffer.putInt(node.level);
+		buffer.putInt(node.usedSpace);
+		for (int i = 0; i < node.usedSpace * dimension; i ++) {
+			buffer.putDouble(node.lows[i]);
+		}
+		for (int i = 0; i < node.usedSpace * dimension; i ++) {
+			buffer.putDouble(node.highs[i]);
+		}
+		if (node.hilberts != null) {
+			for (int i = 0; i < node.usedSpace; i ++) {
+				buffer.putLong(node.hilberts[i]);
+			}
+		}
+		if (!node.isLeaf()) {
+			RTDirNode dir = (RTDirNode) node;
+			for (int i = 0; i < node.usedSpace; i ++) {
+				int page = dir.children.get(i).page;
+				if (page == Constants.NIL) { throw new IllegalStateException("Child has no page."); }
+				buffer.putInt(page);
+			}
+			for (int i = 0; i < node.usedSpace; i ++) {
+				buffer.putInt(dir.counts[i]);
+			}
+		}
+		buffer.flip();
+		try {
+			file.write(node.page, buffer);
+		} catch (IOException e) { throw new UncheckedIOException(e); }
+	}
+	
+	private void finish() { // Give pages to the new nodes, mark the changed ones and free the pages of the nodes that left
+		if (oldRoot != getRoot()) { changed.add(oldRoot); }
+		if (getRoot().page == Constants.NIL) { register(getRoot()); }
+		keep(getRoot().page);
+		for (RTNode node : changed) {
+			if (!isAttached(node)) { continue; }
+			if (node.page == Constants.NIL) { register(node); }
+			else {
+				pool.markDirty(node);
+				registerChildren(node);
+			}
+		}
+		Arrays.sort(kept, 0, keptCount);
+		for (RTNode node : changed) {
+			if (!isAttached(node) && !isKept(node)) { release(node); }
+		}
+		for (int i = 0; i < pinned.size(); i ++) {
+			if (pool.contains(pinned.get(i))) { pool.unpin(pinned.get(i)); }
+		}
+		Arrays.sort(released, 0, releasedCount);
+		for (int i = 0; i < releasedCount; i ++) {
+			if (i > 0 && released[i] == released[i - 1]) { continue; } // Reached through two stubs of the page
+			try {
+				file.free(released[i]);
+			} catch (IOException e) { throw new UncheckedIOException(e); }
+		}
+		changed.clear();
+		pinned.clear();
+		releasedCount = 0;
+		keptCount = 0;
+		oldRoot = null;
+	}
+	
+	private void register(RTNode node) { // Give a new node and the new nodes below it their pages
+		try {
+			node.page = file.allocate();
+		} catch (IOException e) { throw new UncheckedIOException(e); }
+		pool.add(node, true);
+		registerChildren(node);
+	}
+	
+	private void registerChildren(RTNode node) {
+		if (node.isLeaf()) { return; }
+		RTDirNode dir = (RTDirNode) node;
+		for (int i = 0; i < dir.usedSpace; i ++) {
+			if (dir.children.get(i).page == Constants.NIL) { register(dir.children.get(i)); }
+			keep(dir.children.get(i).page);
+		}
+	}
+	
+	private void keep(int page) {
+		if (keptCount == kept.length) { kept = Arrays.copyOf(kept, 2 * kept.length); }
+		kept[keptCount ++] = page;
+	}
+	
+	// Note the page of a node that left the tree, and the pages below it unless they were moved to a node in the tree,
+	// as the children of a split node are. The pages are freed once all are noted, a page may be reached twice
+	private void release(RTNode node) {
+		if (node.page != Constants.NIL) {
+			int page = node.page;
+			RTNode cached = pool.remove(page);
+			node.page = Constants.NIL;
+			if (cached != null) { node = cached; }
+			else if (node instanceof PageStub && !node.isLeaf()) { node = read(page); } // The pages of its children
+			node.page = Constants.NIL;
+			if (releasedCount == released.length) { released = Arrays.copyOf(released, 2 * released.length); }
+			released[releasedCount ++] = page;
+		}
+		if (node.isLeaf() || node instanceof PageStub) { return; }
+		List<RTNode> children = ((RTDirNode) node).children;
+		for (int i = 0; i < children.size(); i ++) { // Also the spare slot of a split
+			if (!isKept(children.get(i))) { release(children.get(i)); }
+		}
+	}
+	
+	// Judge if the page of the node is in the tree. A page only moves to a node changed by the update, or a new one, but
+	// the node that took it may have been split again since, and the page read again or evicted, so the page is looked up
+	private boolean isKept(RTNode node) { return node.page != Constants.NIL && Arrays.binarySearch(kept, 0, keptCount, node.page) >= 0; }
+}
\ No newline at end of file
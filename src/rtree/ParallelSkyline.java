@@ -0,0 +1,147 @@
+// Skyline computed on a fork-join pool
+// The tree is cut into partitions, the entries of the first level that has enough of them, and every partition
+// gets its local skyline from BBS in its own task. Partitions lying wholly in the region dominated by another one
+// are skipped. A local skyline point is in the global skyline if no other local skyline dominates it, which is
+// checked in parallel as well, only against the partitions whose rectangle could hold a dominator
+// Equal points in different partitions are kept once, by the partition that comes first
+
+package rtree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class ParallelSkyline {
+	private static final int PARTITIONS_PER_THREAD = 4; // More partitions than threads to balance the load
+	
+	private RTree rtree;
+	private ForkJoinPool pool;
+	private int dimension;
+	private RTNode[] nodes; // Partition i is the entry entries[i] of nodes[i]
+	private int[] entries;
+	private boolean[] pruned; // Every point of the partition is dominated by another partition
+	private SkylineIndex[] skylines; // Local skylines
+	private List<Rectangle>[] locals;
+	private List<Rectangle>[] results; // Local skyline points that are in the global skyline
+	
+	public ParallelSkyline(RTree rtree, ForkJoinPool pool) {
+		if (pool == null) { throw new IllegalArgumentException("Pool cannot be null."); }
+		this.rtree = rtree;
+		this.pool = pool;
+		dimension = rtree.getDimension();
+	}
+	
+	public List<Rectangle> compute() {
+		if (rtree.getRoot().isLeaf()) { return rtree.skyline(); } // Too small to split
+		partition();
+		prune();
+		pool.invoke(new Task(0, nodes.length, false));
+		pool.invoke(new Task(0, nodes.length, true));
+		
+		List<Rectangle> res = new ArrayList<>();
+		for (int i = 0; i < nodes.length; i ++) {
+			if (results[i] != null) { res.addAll(results[i]); }
+		}
+		RTree.sortSkyline(res);
+		return res;
+	}
+	
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private void partition() { // Go down till a level has enough entries for the pool
+		int target = pool.getParallelism() * PARTITIONS_PER_THREAD;
+		List<RTNode> level = new ArrayList<>();
+		level.add(rtree.getRoot());
+		int count = rtree.getRoot().usedSpace;
+		while (count < target && !level.get(0).isLeaf()) {
+			List<RTNode> next = new ArrayList<>();
+			count = 0;
+			for (int i = 0; i < level.size(); i ++) {
+				RTDirNode node = (RTDirNode) level.get(i);
+				for (int j = 0; j < node.usedSpace; j ++) {
+					next.add(node.getChild(j));
+					count += node.getChild(j).usedSpace;
+				}
+			}
+			level = next;
+		}
+		
+		nodes = new RTNode[count];
+		entries = new int[count];
+		int k = 0;
+		for (int i = 0; i < level.size(); i ++) {
+			for (int j = 0; j < level.get(i).usedSpace; j ++) {
+				nodes[k] = level.get(i);
+				entries[k ++] = j;
+			}
+		}
+		pruned = new boolean[count];
+		skylines = new SkylineIndex[count];
+		locals = (List<Rectangle>[]) new List[count];
+		results = (List<Rectangle>[]) new List[count];
+	}
+	
+	private void prune() { // Every point of partition j dominates every point of partition i if the high corner of j dominates the low corner of i
+		for (int i = 0; i < nodes.length; i ++) {
+			for (int j = 0; j < nodes.length && !pruned[i]; j ++) {
+				if (j != i && dominates(nodes[j].highs, offset(j), j, nodes[i].lows, offset(i), i)) { pruned[i] = true; }
+			}
+		}
+	}
+	
+	private void local(int i) {
+		if (pruned[i]) { return; }
+		skylines[i] = new SkylineIndex(dimension);
+		locals[i] = new ArrayList<>();
+		rtree.bbs(nodes[i], entries[i], skylines[i], locals[i]);
+	}
+	
+	private void merge(int i) {
+		if (pruned[i]) { return; }
+		List<Rectangle> res = new ArrayList<>();
+		for (int k = 0; k < locals[i].size(); k ++) {
+			Rectangle rec = locals[i].get(k);
+			boolean dominated = false;
+			for (int j = 0; j < nodes.length && !dominated; j ++) {
+				if (j == i || pruned[j]) { continue; }
+				if (!dominates(nodes[j].lows, offset(j), j, rec.lows(), 0, i)) { continue; } // No point of j can dominate it
+				dominated = skylines[j].isDominated(rec.lows(), 0, j > i);
+			}
+			if (!dominated) { res.add(rec); }
+		}
+		results[i] = res;
+	}
+	
+	private int offset(int i) { return entries[i] * dimension; }
+	
+	// Dominance between corners of partitions p and q, equal corners only count if p comes first
+	private boolean dominates(double[] a, int aOff, int p, double[] b, int bOff, int q) {
+		if (!Geometry.dominates(a, aOff, b, bOff, dimension)) { return false; }
+		return p < q || !Geometry.equals(a, a, aOff, b, b, bOff, dimension);
+	}
+	
+	private class Task extends RecursiveAction { // Runs a phase on a range of partitions, split in halves
+		private static final long serialVersionUID = 1L;
+		
+		private int from;
+		private int to;
+		private boolean merge;
+		
+		public Task(int from, int to, boolean merge) {
+			this.from = from;
+			this.to = to;
+			this.merge = merge;
+		}
+		
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				if (merge) { merge(from); }
+				else { local(from); }
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new Task(from, mid, merge), new Task(mid, to, merge));
+		}
+	}
+}
\ No newline at end of file
@@ -12,11 +12,14 @@ public class Point implements Cloneable {
 		System.arraycopy(data,  0,  this.data,  0,  data.length);
 	}
 	
+	Point(double[] data, int off, int dimension) { // Copy of the coordinates at the offset of a flat array
+		this.data = new double[dimension];
+		System.arraycopy(data, off, this.data, 0, dimension);
+	}
+	
 	@Override
 	protected Object clone() {
-		double[] copy = new double[data.length];
-		System.arraycopy(data,  0,  copy,  0,  data.length);
-		return new Point(copy);
+		return new Point(data); // The constructor copies the coordinates
 	}
 	
 	@Override
@@ -33,6 +36,8 @@ public class Point implements Cloneable {
 	
 	public double getCoordinate(int index) { return data[index]; }
 	
+	double[] getData() { return data; } // The backing array for geometry without copying, must not be modified
+	
 	@Override
 	public boolean equals(Object obj) {
 		if (obj instanceof Point) {
@@ -46,11 +51,17 @@ public class Point implements Cloneable {
 		return false;
 	}
 	
-	public double getDistance() { // Calculate the square of mindist of the point (distance to point o)
-		double res = 0;
+	@Override
+	public int hashCode() { // Consistent with equals, which takes 0.0 and -0.0 as the same coordinate
+		int res = 1;
 		for (int i = 0; i < data.length; i ++) {
-			res += data[i] * data[i];
+			long bits = Double.doubleToLongBits(data[i] == 0 ? 0.0 : data[i]);
+			res = 31 * res + (int) (bits ^ (bits >>> 32));
 		}
 		return res;
 	}
+	
+	public double getDistance() { // Calculate the square of mindist of the point (distance to point o)
+		return Geometry.mindist(data, 0, data.length);
+	}
 }
\ No newline at end of file
@@ -0,0 +1,350 @@
+// Reads a file of points, one point per line with its coordinates separated by whitespace, blank lines are skipped
+// The file is read by chunks of bytes through its channel and each chunk is parsed straight into an array of doubles,
+// no line strings and no boxed numbers. The points are handed over in batches so that the file is never in memory
+// as a whole. A chunk ends at a line end, the rest of the line goes to the next chunk. With a pool the chunks of a
+// round, one per thread, are parsed in parallel and handed over in file order
+// Plain chunked reads instead of a mapped file: a mapping is limited to 2 GB and reading a heap array is as fast
+
+package rtree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class PointLoader {
+	public static final int DEFAULT_BATCH_SIZE = 10000;
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 22;
+	private static final double[] POWERS = { // Exact powers of ten
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+	
+	private Path path;
+	private int dimension; // 0 till it is taken from the first line
+	private int batchSize = DEFAULT_BATCH_SIZE;
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+	private ForkJoinPool pool;
+	
+	public interface Sink { // Receives count points, the coordinates of point i are coords[i * dimension] on, the array is reused after the call
+		void accept(double[] coords, int count);
+	}
+	
+	public PointLoader(Path path) { this(path, 0); }
+	
+	public PointLoader(Path path, int dimension) { // Dimension 0 takes it from the first line
+		if (path == null) { throw new IllegalArgumentException("Path cannot be null."); }
+		if (dimension < 0) { throw new IllegalArgumentException("Dimension cannot be negative."); }
+		this.path = path;
+		this.dimension = dimension;
+	}
+	
+	public int getDimension() { return dimension; }
+	
+	public int getBatchSize() { return batchSize; }
+	
+	public void setBatchSize(int batchSize) { // Points per batch
+		if (batchSize < 1) { throw new IllegalArgumentException("Batch size should be positive."); }
+		this.batchSize = batchSize;
+	}
+	
+	public int getChunkSize() { return chunkSize; }
+	
+	public void setChunkSize(int chunkSize) { // Bytes read at once, grows for a longer line
+		if (chunkSize < 1) { throw new IllegalArgumentException("Chunk size should be positive."); }
+		this.chunkSize = chunkSize;
+	}
+	
+	public void setPool(ForkJoinPool pool) { this.pool = pool; } // Null parses in the calling thread
+	
+	public List<Rectangle> readAll() throws IOException { // All the points, for a bulk load
+		final List<Rectangle> res = new ArrayList<>();
+		read(new Sink() {
+			@Override
+			public void accept(double[] coords, int count) { addRectangles(coords, count, res); }
+		});
+		return res;
+	}
+	
+	public long load(final RTree tree) throws IOException { // Insert the points batch by batch, an empty tree is packed by the first batch
+		if (tree == null) { throw new IllegalArgumentException("Tree cannot be null."); }
+		if (dimension != 0 && dimension != tree.getDimension()) { throw new IllegalArgumentException("Point dimension different than RTree dimension."); }
+		final List<Rectangle> batch = new ArrayList<>();
+		return read(new Sink() {
+			@Override
+			public void accept(double[] coords, int count) {
+				batch.clear();
+				addRectangles(coords, count, batch);
+				tree.insertAll(batch);
+			}
+		});
+	}
+	
+	private void addRectangles(double[] coords, int count, List<Rectangle> res) {
+		double[] data = new double[dimension];
+		for (int i = 0; i < count; i ++) {
+			System.arraycopy(coords, i * dimension, data, 0, dimension);
+			res.add(new Rectangle(new Point(data)));
+		}
+	}
+	
+	public long read(Sink sink) throws IOException { // Hand all the points to the sink, returns their number
+		if (sink == null) { throw new IllegalArgumentException("Sink cannot be null."); }
+		int parts = pool == null ? 1 : pool.getParallelism();
+		Chunk[] chunks = new Chunk[parts];
+		for (int i = 0; i < parts; i ++) {
+			chunks[i] = new Chunk(chunkSize);
+		}
+		Chunk rest = new Chunk(0); // Bytes after the last line end of the chunk before
+		double[] batch = null;
+		int filled = 0; // Points in the batch
+		long lines = 0; // Lines handed over
+		long points = 0;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			boolean end = false;
+			while (!end) {
+				int used = 0;
+				while (used < parts && !end) {
+					end = fill(channel, chunks[used ++], rest);
+				}
+				for (int i = 0; i < used && dimension == 0; i ++) {
+					dimension = chunks[i].firstLineSize();
+				}
+				int size = dimension == 0 ? 1 : dimension; // Only blank lines so far, any size counts them
+				if (used == 1 || pool == null) {
+					for (int i = 0; i < used; i ++) {
+						chunks[i].parse(size);
+					}
+				} else { pool.invoke(new Task(chunks, 0, used, size)); }
+				if (dimension == 0) {
+					for (int i = 0; i < used; i ++) {
+						lines += chunks[i].lines;
+					}
+					continue;
+				}
+				
+				if (batch == null) { batch = new double[batchSize * dimension]; }
+				for (int i = 0; i < used; i ++) {
+					Chunk chunk = chunks[i];
+					if (chunk.error != null) { throw new IllegalArgumentException("Line " + (lines + chunk.lines + 1) + " " + chunk.error); }
+					for (int p = 0; p < chunk.points;) { // Copy into the batch, hand it over when full
+						int n = Math.min(chunk.points - p, batchSize - filled);
+						System.arraycopy(chunk.coords, p * dimension, batch, filled * dimension, n * dimension);
+						filled += n;
+						p += n;
+						if (filled == batchSize) {
+							sink.accept(batch, filled);
+							filled = 0;
+						}
+					}
+					lines += chunk.lines;
+					points += chunk.points;
+				}
+			}
+		}
+		if (filled > 0) { sink.accept(batch, filled); }
+		return points;
+	}
+	
+	// Read the rest of the chunk before and then the file till the chunk is full and cut it after its last line end.
+	// Returns true at the end of the file, the chunk then holds all that is left
+	private static boolean fill(FileChannel channel, Chunk chunk, Chunk rest) throws IOException {
+		if (chunk.data.length < rest.length) { chunk.data = new byte[rest.length]; }
+		System.arraycopy(rest.data, 0, chunk.data, 0, rest.length);
+		chunk.length = rest.length;
+		rest.length = 0;
+		int from = 0; // Where the search for a line end starts
+		while (true) {
+			ByteBuffer buf = ByteBuffer.wrap(chunk.data, chunk.length, chunk.data.length - chunk.length);
+			while (buf.hasRemaining()) {
+				if (channel.read(buf) < 0) {
+					chunk.length = buf.position();
+					return true;
+				}
+			}
+			chunk.length = buf.position();
+			int cut = chunk.length;
+			while (cut > from && chunk.data[cut - 1] != '\n') {
+				cut --;
+			}
+			if (cut > from) {
+				rest.keep(chunk.data, cut, chunk.length - cut);
+				chunk.length = cut;
+				return false;
+			}
+			from = chunk.length;
+			chunk.grow(); // One line longer than the chunk
+		}
+	}
+	
+	private static boolean isSpace(byte c) { return c == ' ' || c == '\t' || c == '\r' || c == '\n' || c == '\f'; }
+	
+	private static class Chunk {
+		byte[] data;
+		int length;
+		double[] coords = new double[256];
+		int points;
+		int lines; // Lines of the chunk, those before the bad line if there is an error
+		String error;
+		int end; // Index after the last number parsed
+		
+		Chunk(int size) { data = new byte[size]; }
+		
+		void grow() {
+			byte[] bigger = new byte[Math.max(16, data.length * 2)];
+			System.arraycopy(data, 0, bigger, 0, length);
+			data = bigger;
+		}
+		
+		void keep(byte[] src, int from, int n) {
+			if (data.length < n) { data = new byte[n]; }
+			System.arraycopy(src, from, data, 0, n);
+			length = n;
+		}
+		
+		int firstLineSize() { // Numbers on the first line that is not blank
+			int count = 0;
+			for (int i = 0; i < length; i ++) {
+				if (data[i] == '\n' && count > 0) { break; }
+				if (!isSpace(data[i]) && (i == 0 || isSpace(data[i - 1]))) { count ++; }
+			}
+			return count;
+		}
+		
+		void parse(int dimension) {
+			points = 0;
+			lines = 0;
+			error = null;
+			int k = 0; // Numbers on the current line
+			int i = 0;
+			while (i < length) {
+				byte c = data[i];
+				if (isSpace(c)) {
+					if (c == '\n') {
+						if (k > 0 && !endLine(k, dimension)) { return; }
+						lines ++;
+						k = 0;
+					}
+					i ++;
+					continue;
+				}
+				if (k == dimension) {
+					error = "has more than " + dimension + " coordinates.";
+					return;
+				}
+				int at = (points + 1) * dimension;
+				if (at > coords.length) {
+					double[] bigger = new double[Math.max(at, coords.length * 2)];
+					System.arraycopy(coords, 0, bigger, 0, points * dimension);
+					coords = bigger;
+				}
+				coords[points * dimension + k] = number(i);
+				if (error != null) { return; }
+				k ++;
+				i = end;
+			}
+			if (k > 0 && endLine(k, dimension)) { lines ++; } // Last line of the file without a line end
+		}
+		
+		private boolean endLine(int k, int dimension) {
+			if (k < dimension) {
+				error = "has " + k + " coordinates, expected " + dimension + ".";
+				return false;
+			}
+			points ++;
+			return true;
+		}
+		
+		// Parse the number starting at the index. Up to 15 significant digits and a power of ten up to 22 the value is
+		// the mantissa times or divided by the power, both exact so the result is rounded once as Double.parseDouble does.
+		// Anything else goes to Double.parseDouble
+		private double number(int start) {
+			int i = start;
+			boolean negative = data[i] == '-';
+			if (negative || data[i] == '+') { i ++; }
+			long mantissa = 0;
+			int digits = 0; // Significant digits, those past 18 are dropped
+			int exponent = 0;
+			boolean any = false;
+			for (; i < length && data[i] >= '0' && data[i] <= '9'; i ++) {
+				if (digits < 18) {
+					mantissa = mantissa * 10 + (data[i] - '0');
+					if (mantissa != 0) { digits ++; }
+				} else {
+					digits ++;
+					exponent ++;
+				}
+				any = true;
+			}
+			if (i < length && data[i] == '.') {
+				for (i ++; i < length && data[i] >= '0' && data[i] <= '9'; i ++) {
+					if (digits < 18) {
+						mantissa = mantissa * 10 + (data[i] - '0');
+						if (mantissa != 0) { digits ++; }
+						exponent --;
+					} else { digits ++; }
+					any = true;
+				}
+			}
+			if (any && i < length && (data[i] == 'e' || data[i] == 'E')) {
+				i ++;
+				boolean minus = i < length && data[i] == '-';
+				if (i < length && (minus || data[i] == '+')) { i ++; }
+				int e = 0;
+				boolean expDigits = false;
+				for (; i < length && data[i] >= '0' && data[i] <= '9'; i ++) {
+					if (e < 100000) { e = e * 10 + (data[i] - '0'); }
+					expDigits = true;
+				}
+				if (!expDigits) { any = false; }
+				exponent += minus ? -e : e;
+			}
+			if (any && (i == length || isSpace(data[i])) && digits <= 15 && exponent >= -22 && exponent <= 22) {
+				end = i;
+				double value = exponent < 0 ? mantissa / POWERS[-exponent] : mantissa * POWERS[exponent];
+				return negative ? -value : value;
+			}
+			
+			end = start;
+			while (end < length && !isSpace(data[end])) {
+				end ++;
+			}
+			String token = new String(data, start, end - start, StandardCharsets.ISO_8859_1);
+			try {
+				return Double.parseDouble(token);
+			} catch (NumberFormatException e) {
+				error = "has an invalid number \"" + token + "\".";
+				return 0;
+			}
+		}
+	}
+	
+	private static class Task extends RecursiveAction { // Parse the chunks from..to
+		private static final long serialVersionUID = 1L;
+		private Chunk[] chunks;
+		private int from;
+		private int to;
+		private int dimension;
+		
+		Task(Chunk[] chunks, int from, int to, int dimension) {
+			this.chunks = chunks;
+			this.from = from;
+			this.to = to;
+			this.dimension = dimension;
+		}
+		
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				chunks[from].parse(dimension);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new Task(chunks, from, mid, dimension), new Task(chunks, mid, to, dimension));
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,75 @@
+// Work done by one operation on a tree with metrics on, see TreeMetrics
+// The counters are filled by the tree as the operation runs, the operation ended when its stats reach the listeners
+
+package rtree;
+
+public class QueryStats {
+	protected String operation;
+	protected long start;
+	protected long nanos;
+	protected long nodeVisits; // Nodes read, leaves included
+	protected long leafVisits;
+	protected long splits; // Nodes split, 2-to-3 splits of the Hilbert tree included
+	protected long condenses; // Calls of condenseTree, one per level
+	protected long reinserts; // Forced reinserts of the R*-tree, data or subtrees
+	protected long dominanceChecks; // Entries tested against the skyline or for domination
+	protected long heapPushes; // Entries put in the heap of best-first traversals
+	protected long results;
+	protected QueryStats outer; // Stats of the operation this one runs in, if any
+	protected TreeMetrics metrics; // Where the stats go at the end
+	private int heapBefore;
+	
+	public QueryStats(String operation) { this.operation = operation; }
+	
+	public String getOperation() { return operation; }
+	
+	public long getNanos() { return nanos; }
+	
+	public long getNodeVisits() { return nodeVisits; }
+	
+	public long getLeafVisits() { return leafVisits; }
+	
+	public long getSplits() { return splits; }
+	
+	public long getCondenses() { return condenses; }
+	
+	public long getReinserts() { return reinserts; }
+	
+	public long getDominanceChecks() { return dominanceChecks; }
+	
+	public long getHeapPushes() { return heapPushes; }
+	
+	public long getResults() { return results; }
+	
+	protected void visit(RTNode node) {
+		nodeVisits ++;
+		if (node.isLeaf()) { leafVisits ++; }
+	}
+	
+	protected void visit(RTNode node, int heapSize) { // A best-first traversal expands the node, the heap has heapSize entries before
+		visit(node);
+		heapBefore = heapSize;
+	}
+	
+	protected void pushed(int heapSize, int checks) { // End of the expansion
+		heapPushes += heapSize - heapBefore;
+		dominanceChecks += checks;
+	}
+	
+	protected void add(QueryStats stats) { // Add the counters of another operation
+		nodeVisits += stats.nodeVisits;
+		leafVisits += stats.leafVisits;
+		splits += stats.splits;
+		condenses += stats.condenses;
+		reinserts += stats.reinserts;
+		dominanceChecks += stats.dominanceChecks;
+		heapPushes += stats.heapPushes;
+		results += stats.results;
+	}
+	
+	@Override
+	public String toString() {
+		return operation + " " + nanos + " ns, nodes " + nodeVisits + ", leaves " + leafVisits + ", splits " + splits + ", condenses " + condenses
+				+ ", reinserts " + reinserts + ", dominance checks " + dominanceChecks + ", heap pushes " + heapPushes + ", results " + results;
+	}
+}
\ No newline at end of file
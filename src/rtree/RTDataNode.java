@@ -3,48 +3,128 @@
 package rtree;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class RTDataNode extends RTNode {
-	public RTDataNode(RTree rtree, RTNode parent) { super(rtree, parent, 0); }
+	protected long[] ids; // Ids of the data, 0 for none. The data are only in lows, highs and ids, see getData
 	
-	public boolean insert(Rectangle rec) {
+	public RTDataNode(RTree rtree, RTNode parent) {
+		super(rtree, parent, 0);
+		ids = new long[rtree.getCapacity() + 1]; // +1 for splitting
+	}
+	
+	protected Rectangle getData(int i) { return new Rectangle(lows, highs, i * dimension, dimension, ids[i]); } // A new rectangle for a result
+	
+	protected void addData(Rectangle rec) { addData(rec.lows(), rec.highs(), 0, rec.getId()); }
+	
+	protected void addData(double[] low, double[] high, int off, long id) { // Append the data given by its coordinates in flat arrays
+		if (usedSpace == rtree.getCapacity()) { throw new IllegalArgumentException("Node is full."); }
+		setEntry(usedSpace, low, high, off);
+		place(usedSpace ++, id);
+	}
+	
+	protected void addData(RTDataNode from, int i) { // Move entry i of another leaf into this one
+		if (usedSpace == rtree.getCapacity()) { throw new IllegalArgumentException("Node is full."); }
+		copyEntry(from, i, usedSpace);
+		place(usedSpace ++, from.ids[i]);
+	}
+	
+	protected void replaceData(int i, Rectangle rec) { // Put the rectangle in place of entry i
+		setEntry(i, rec);
+		place(i, rec.getId());
+	}
+	
+	private void place(int i, long id) { // Every data put in a leaf for good comes here, the tree then knows the leaf of the id
+		ids[i] = id;
+		if (id != 0) { rtree.placed(id, this); }
+	}
+	
+	protected int indexOf(long id) {
+		for (int i = 0; i < usedSpace; i ++) {
+			if (ids[i] == id) { return i; }
+		}
+		return -1;
+	}
+	
+	@Override
+	protected void deleteData(int i) {
+		System.arraycopy(ids, i + 1, ids, i, usedSpace - i - 1);
+		super.deleteData(i);
+	}
+	
+	public boolean insert(Rectangle rec) { return insert(rec.lows(), rec.highs(), 0, rec.getId()); }
+	
+	protected boolean insert(double[] low, double[] high, int off, long id) { // Insert the data given by its coordinates in flat arrays
+		if (rtree.getTreeType() == Constants.HILBERT) { // Deferred splitting with the siblings
+			insertHilbert(low, high, off, rtree.getHilbertCurve().index(low, high, off), 1, id);
+			return true;
+		}
 		if (usedSpace < rtree.getCapacity()) {
-			datas[usedSpace ++] = rec;
+			addData(low, high, off, id);
 			RTDirNode parent = (RTDirNode) getParent();
 			if (parent != null) { parent.adjustTree(this, null); }
+		} else if (rtree.getTreeType() == Constants.RSTAR && !isRoot() && rtree.markReinsert(level)) { // First overflow on this level
+			reinsert(low, high, off, id);
 		} else {
-			RTDataNode[] splitNodes = splitLeaf(rec);
+			RTDataNode[] splitNodes = splitLeaf(low, high, off, id);
 			RTDataNode l1 = splitNodes[0];
 			RTDataNode l2 = splitNodes[1];
 			if (isRoot()) { // Root is full, needs to split a new root
 				RTDirNode rdir = new RTDirNode(rtree, Constants.NULL, level + 1);
 				rtree.setRoot(rdir);
-				rdir.addData(l1.getNodeRectangle());
-				rdir.addData(l2.getNodeRectangle());
-				l1.parent = rdir;
-				l2.parent = rdir;
-				rdir.children.add(l1);
-				rdir.children.add(l2);
+				rdir.addChild(l1);
+				rdir.addChild(l2);
 			} else {
 				RTDirNode parentNode = (RTDirNode) getParent();
-				parentNode.adjustTree(l1, l2);
+				parentNode.adjustTree(this, l1, l2);
 			}
 		}
 		return true;
 	}
 	
-	public RTDataNode[] splitLeaf(Rectangle rec) { // Split the leaf when the data amount reach its maximum
-		int[][] group = null;
+	// Forced reinsert of R*-tree, remove the farthest data and insert them again. The data are copied out first, a leaf has
+	// only one forced reinsert per insertion so the buffers are not taken again meanwhile
+	private void reinsert(double[] low, double[] high, int off, long id) {
+		setEntry(usedSpace, low, high, off);
+		place(usedSpace ++, id); // Kept here unless it is among the farthest
+		int count = pickReinsert();
+		UpdateBuffers b = rtree.buffers();
+		for (int i = 0; i < count; i ++) {
+			System.arraycopy(lows, b.far[i] * dimension, b.farLows, i * dimension, dimension);
+			System.arraycopy(highs, b.far[i] * dimension, b.farHighs, i * dimension, dimension);
+			b.farIds[i] = ids[b.far[i]];
+		}
+		Arrays.sort(b.far, 0, count);
+		for (int i = count - 1; i >= 0; i --) { // Delete from the back so the indices stay valid
+			deleteData(b.far[i]);
+		}
+		((RTDirNode) getParent()).adjustTree(this, null);
+		for (int i = 0; i < count; i ++) {
+			rtree.reinsert(b.farLows, b.farHighs, i * dimension, b.farIds[i]);
+		}
+	}
+	
+	public RTDataNode[] splitLeaf(Rectangle rec) { return splitLeaf(rec.lows(), rec.highs(), 0, rec.getId()); } // Split the leaf when the data amount reach its maximum
+	
+	protected RTDataNode[] splitLeaf(double[] low, double[] high, int off, long id) {
+		QueryStats stats = rtree.stats();
+		if (stats != null) { stats.splits ++; }
+		setEntry(usedSpace, low, high, off); // Place the new data in the spare slot
+		ids[usedSpace] = id;
+		int n1;
 		switch(rtree.getTreeType()) { // Different type of split strategies
 			case Constants.RTREE_LINEAR:
+				n1 = linearSplit();
 				break;
 			case Constants.RTREE_QUADRATIC:
-				group = quadraticSplit(rec);
+				n1 = quadraticSplit();
 				break;
 			case Constants.RTREE_EXPONENTIAL:
+				n1 = new ExponentialSplit(this).split();
 				break;
 			case Constants.RSTAR:
+				n1 = rstarSplit();
 				break;
 			default:
 				throw new IllegalArgumentException("Invalid tree type.");
@@ -52,75 +132,100 @@ public class RTDataNode extends RTNode {
 		
 		RTDataNode l1 = new RTDataNode(rtree, parent);
 		RTDataNode l2 = new RTDataNode(rtree, parent);
-		int[] group1 = null, group2 = null;
-		if (group != null) {
-			group1 = group[0];
-			group2 = group[1];
-			for (int i = 0; i < group1.length; i ++) {
-				l1.addData(datas[group1[i]]);
-			}
-			for (int i = 0; i < group2.length; i ++) {
-				l2.addData(datas[group2[i]]);
-			}
+		int[] order = rtree.buffers().order;
+		for (int i = 0; i < n1; i ++) {
+			l1.addData(this, order[i]);
+		}
+		for (int i = n1; i <= usedSpace; i ++) {
+			l2.addData(this, order[i]);
 		}
 		return new RTDataNode[] {l1, l2};
 	}
 	
 	@Override
-	public RTDataNode chooseLeaf(Rectangle rec) {
-		insertIndex = usedSpace;
+	protected Object getPayload(int i) { return ids[i]; } // The id
+	
+	@Override
+	protected void insertPayload(int i, Object payload) {
+		System.arraycopy(ids, i, ids, i + 1, usedSpace - i);
+		place(i, (Long) payload);
+	}
+	
+	@Override
+	protected RTNode newSibling() { return new RTDataNode(rtree, parent); }
+	
+	@Override
+	protected RTNode copy() {
+		RTDataNode node = new RTDataNode(rtree, parent);
+		node.copyEntries(this);
+		for (int i = 0; i < usedSpace; i ++) {
+			node.place(i, ids[i]);
+		}
+		return node;
+	}
+	
+	@Override
+	public RTDataNode chooseLeaf(double[] low, double[] high, int off) {
+		QueryStats stats = rtree.stats();
+		if (stats != null) { stats.visit(this); }
 		return this;
 	}
 	
 	protected int delete(Rectangle rec) {
 		for (int i = 0; i < usedSpace; i ++) {
-			if (datas[i].equals(rec)) {
-				deleteData(i);
-				List<RTNode> deleteEntries = new ArrayList<>(); // The list for the data in the deleted node
-				condenseTree(deleteEntries);
-				for (int j = 0; j < deleteEntries.size(); j ++) { // Relocate these data
-					RTNode node = deleteEntries.get(j);
-					if (node.isLeaf()) { // Insert into leaf directly
-						for (int k = 0; k < node.usedSpace; k ++) {
-							rtree.insert(node.datas[k]);
-						}
-					} else { // Traverse the nodes, find leaves and insert
-						List<RTNode> traverseNodes = rtree.traversePost(node);
-						for (int k = 0; k < traverseNodes.size(); k ++) {
-							RTNode traverseNode = traverseNodes.get(k);
-							if (traverseNode.isLeaf()) {
-								for (int t = 0; t < traverseNode.usedSpace; t ++) {
-									rtree.insert(traverseNode.datas[t]);
-								}
-							}
+			if (matches(i, rec)) {
+				delete(i);
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	protected void delete(int i) { // Delete entry i and condense the tree from this leaf up
+		rtree.removed(ids[i]);
+		deleteData(i);
+		List<RTNode> deleteEntries = new ArrayList<>(); // The list for the data in the deleted node
+		condenseTree(deleteEntries);
+		for (int j = 0; j < deleteEntries.size(); j ++) { // Relocate these data
+			RTNode node = deleteEntries.get(j);
+			if (node.isLeaf()) { // Insert into leaf directly
+				RTDataNode leaf = (RTDataNode) node;
+				for (int k = 0; k < leaf.usedSpace; k ++) {
+					rtree.insertData(leaf.lows, leaf.highs, k * dimension, leaf.ids[k]);
+				}
+			} else { // Traverse the nodes, find leaves and insert
+				List<RTNode> traverseNodes = rtree.traversePost(node);
+				for (int k = 0; k < traverseNodes.size(); k ++) {
+					RTNode traverseNode = traverseNodes.get(k);
+					if (traverseNode.isLeaf()) {
+						RTDataNode leaf = (RTDataNode) traverseNode;
+						for (int t = 0; t < leaf.usedSpace; t ++) {
+							rtree.insertData(leaf.lows, leaf.highs, t * dimension, leaf.ids[t]);
 						}
 					}
 				}
-				return deleteIndex;
 			}
 		}
-		return -1;
 	}
 	
 	@Override
 	protected RTDataNode findLeaf(Rectangle rec) {
+		QueryStats stats = rtree.stats();
+		if (stats != null) { stats.visit(this); }
 		for (int i = 0; i < usedSpace; i ++) {
-			if (datas[i].enclosure(rec)) {
-				deleteIndex = i;
-				return this;
-			}
+			if (matches(i, rec)) { return this; } // A larger data rectangle enclosing it is not the one to delete
 		}
 		return null;
 	}
 	
 	@Override
-	protected List<Rectangle> searchLeaf(Rectangle rec) {
-		List<Rectangle> res = new ArrayList<>();
+	protected void searchLeaf(Rectangle rec, List<Rectangle> res) {
+		QueryStats stats = rtree.stats();
+		if (stats != null) { stats.visit(this); }
 		for (int i = 0; i < usedSpace; i ++) {
-			if (rec.enclosure(datas[i])) {
-				res.add(datas[i]);
+			if (enclosedBy(rec, i)) {
+				res.add(getData(i));
 			}
 		}
-		return res;
 	}
 }
\ No newline at end of file
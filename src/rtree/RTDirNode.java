@@ -3,6 +3,7 @@
 package rtree;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class RTDirNode extends RTNode {
@@ -13,70 +14,171 @@ public class RTDirNode extends RTNode {
 		children = new ArrayList<>();
 	}
 	
-	public RTNode getChild(int index) { return children.get(index); }
+	public RTNode getChild(int index) {
+		RTNode child = children.get(index);
+		if (child.page != Constants.NIL) { child = rtree.fetch(this, index); } // Paged tree, the child might have to be read first
+		return child;
+	}
+	
+	protected void addChild(RTNode node) { // Append a child without any adjustment of the upper levels
+		if (usedSpace == rtree.getCapacity()) { throw new IllegalArgumentException("Node is full."); }
+		setEntry(usedSpace ++, node);
+		children.add(node);
+		node.setParent(this);
+	}
+	
+	protected void addChild(RTNode node, double[] low, double[] high, int off, long h, int count) { // Append a child whose entry is given, it may be a stub already
+		if (usedSpace == rtree.getCapacity()) { throw new IllegalArgumentException("Node is full."); }
+		System.arraycopy(low, off, lows, usedSpace * dimension, dimension);
+		System.arraycopy(high, off, highs, usedSpace * dimension, dimension);
+		if (hilberts != null) { hilberts[usedSpace] = h; }
+		counts[usedSpace] = count;
+		usedSpace ++;
+		children.add(node);
+		node.setParent(this);
+	}
+	
+	protected void addChild(RTDirNode from, int i) { // Move entry i of another index node into this one
+		if (usedSpace == rtree.getCapacity()) { throw new IllegalArgumentException("Node is full."); }
+		copyEntry(from, i, usedSpace ++);
+		RTNode child = from.children.get(i);
+		children.add(child);
+		child.setParent(this);
+	}
+	
+	@Override
+	protected void deleteData(int i) {
+		children.remove(i);
+		super.deleteData(i);
+	}
+	
+	@Override
+	protected Object getPayload(int i) { return children.get(i); }
+	
+	@Override
+	protected void insertPayload(int i, Object payload) {
+		RTNode child = (RTNode) payload;
+		children.add(i, child);
+		child.setParent(this);
+	}
+	
+	@Override
+	protected RTNode newSibling() { return new RTDirNode(rtree, parent, level); }
+	
+	@Override
+	protected RTNode copy() { // The children are shared and still lead up to this node, see RTree.writable
+		RTDirNode node = new RTDirNode(rtree, parent, level);
+		node.copyEntries(this);
+		for (int i = 0; i < usedSpace; i ++) {
+			node.children.add(children.get(i));
+		}
+		return node;
+	}
+	
+	@Override
+	protected void clearEntries() {
+		children.clear();
+		super.clearEntries();
+	}
 	
 	@Override
-	public RTDataNode chooseLeaf(Rectangle rec) { // Choose the leaf to be split (data node)
+	public RTDataNode chooseLeaf(double[] low, double[] high, int off) { // Choose the leaf to be split (data node)
+		QueryStats stats = rtree.stats();
+		if (stats != null) { stats.visit(this); }
+		return getChild(chooseSubtree(low, high, off)).chooseLeaf(low, high, off);
+	}
+	
+	// Choose the index node on the level to hold a subtree with the rectangle
+	protected RTDirNode chooseNode(double[] low, double[] high, int off, int level) {
+		if (this.level == level) { return this; }
+		return ((RTDirNode) getChild(chooseSubtree(low, high, off))).chooseNode(low, high, off, level);
+	}
+	
+	protected int chooseSubtree(Rectangle rec) { return chooseSubtree(rec.lows(), rec.highs(), 0); }
+	
+	protected int chooseSubtree(double[] low, double[] high, int off) {
 		int index = 0;
 		switch (rtree.getTreeType()) { // Different type of split strategies
 		case Constants.RTREE_LINEAR:
-			break;
 		case Constants.RTREE_QUADRATIC:
-			break;
 		case Constants.RTREE_EXPONENTIAL:
-			index = findEnlarge(rec);
+			index = findEnlarge(low, high, off);
 			break;
 		case Constants.RSTAR:
-			if (level == 1) { index = findOverlap(rec); }
-			else { index = findEnlarge(rec); }
+			if (level == 1) { index = findOverlap(low, high, off); }
+			else { index = findEnlarge(low, high, off); }
+			break;
+		case Constants.HILBERT:
+			index = findHilbert(rtree.getHilbertCurve().index(low, high, off));
 			break;
 		default:
 			throw new IllegalStateException("Invalid tree type.");
 		}
-		insertIndex = index;
-		return getChild(index).chooseLeaf(rec);
+		return index;
 	}
-
-	private int findOverlap(Rectangle rec) { // Find the node with the least overlap area with its data
+	
+	// Find the entry whose rectangle gets the least overlap enlargement with the other entries when covering the rectangle
+	// If having same overlap enlargement then choose the least area enlargement, and then the smaller rectangle
+	private int findOverlap(double[] recLow, double[] recHigh, int recOff) {
+		UpdateBuffers b = rtree.buffers();
+		double[] low = b.low;
+		double[] high = b.high;
 		double overlap = Double.POSITIVE_INFINITY;
 		int sel = -1;
 		for (int i = 0; i < usedSpace; i ++) {
-			RTNode node = getChild(i);
+			int off = i * dimension;
+			System.arraycopy(lows, off, low, 0, dimension);
+			System.arraycopy(highs, off, high, 0, dimension);
+			Geometry.include(low, high, 0, recLow, recHigh, recOff, dimension);
 			double ol = 0;
-			for (int j = 0; j < node.datas.length; j ++) {
-				ol += rec.intersectArea(node.datas[j]);
+			for (int j = 0; j < usedSpace; j ++) {
+				if (j != i) {
+					ol += Geometry.intersectArea(low, high, 0, lows, highs, j * dimension, dimension) - Geometry.intersectArea(lows, highs, off, lows, highs, j * dimension, dimension);
+				}
 			}
 			
 			if (ol < overlap) {
 				overlap = ol;
 				sel = i;
 			}
-			else if (ol == overlap) { // If having same overlap areas then choose the smaller rectangle
-				double area1 = datas[i].getUnion(rec).getArea() - datas[i].getArea();
-				double area2 = datas[sel].getUnion(rec).getArea() - datas[sel].getArea();
-				if (area1 == area2) { sel = datas[sel].getArea() <= datas[i].getArea() ? sel : i; }
+			else if (ol == overlap) {
+				double area1 = enlargement(i, recLow, recHigh, recOff);
+				double area2 = enlargement(sel, recLow, recHigh, recOff);
+				if (area1 == area2) { sel = entryArea(sel) <= entryArea(i) ? sel : i; }
 				else { sel = area1 < area2 ? i : sel; }
 			}
 		}
 		return sel;
 	}
 	
-	private int findEnlarge(Rectangle rec) { // Find the node with the largest area enlargement
+	private int findHilbert(long h) { // Find the first entry whose largest Hilbert value is not less than the new one
+		for (int i = 0; i < usedSpace; i ++) {
+			if (hilberts[i] >= h) { return i; }
+		}
+		return usedSpace - 1;
+	}
+	
+	private int findEnlarge(double[] low, double[] high, int off) { // Find the node with the largest area enlargement
 		double area = Double.POSITIVE_INFINITY;
 		int sel = -1;
 		for (int i = 0; i < usedSpace; i ++) {
-			double enlarge = datas[i].getUnion(rec).getArea() - datas[i].getArea();
+			double enlarge = enlargement(i, low, high, off);
 			if (enlarge < area) {
 				area = enlarge;
 				sel = i;
-			} else if (enlarge == area) { sel = datas[sel].getArea() < datas[i].getArea() ? sel : i; }
+			} else if (enlarge == area) { sel = entryArea(sel) < entryArea(i) ? sel : i; }
 		}
 		return sel;
 	}
 	
-	public void adjustTree(RTNode n1, RTNode n2) { // Adjust the tree recursively after insertion
-		datas[insertIndex] = n1.getNodeRectangle();
-		children.set(insertIndex, n1);
+	public void adjustTree(RTNode n1, RTNode n2) { adjustTree(n1, n1, n2); } // Adjust the tree recursively after insertion
+	
+	// Same, the child old was split into n1 and n2, or changed if both n1 and old are the same node and n2 is null
+	public void adjustTree(RTNode old, RTNode n1, RTNode n2) {
+		int index = indexOf(old);
+		setEntry(index, n1);
+		children.set(index, n1);
+		n1.setParent(this);
 		if (n2 != null) { insert(n2); }
 		else if (!isRoot()) {
 			RTDirNode parent = (RTDirNode) getParent();
@@ -86,46 +188,69 @@ public class RTDirNode extends RTNode {
 	
 	protected boolean insert(RTNode node) {
 		if (usedSpace < rtree.getCapacity()) {
-			datas[usedSpace ++] = node.getNodeRectangle();
-			children.add(node);
-			node.parent = this;
+			addChild(node);
 			RTDirNode parent = (RTDirNode) getParent();
 			if (parent != null) { parent.adjustTree(this, null); }
 			return false;
+		} else if (rtree.getTreeType() == Constants.RSTAR && !isRoot() && rtree.markReinsert(level)) { // First overflow on this level
+			reinsert(node);
 		} else { // Non-leaf needs to be split
 			RTDirNode[] a = splitIndex(node);
 			RTDirNode n1 = a[0];
 			RTDirNode n2 = a[1];
 			if (isRoot()) { // Set a new root
 				RTDirNode newRoot = new RTDirNode(rtree, Constants.NULL, level + 1);
-				newRoot.addData(n1.getNodeRectangle());
-				newRoot.addData(n2.getNodeRectangle());
-				newRoot.children.add(n1);
-				newRoot.children.add(n2);
-				n1.parent = newRoot;
-				n2.parent = newRoot;
+				newRoot.addChild(n1);
+				newRoot.addChild(n2);
 				rtree.setRoot(newRoot);
 			} else {
 				RTDirNode p = (RTDirNode) getParent();
-				p.adjustTree(n1, n2);
+				p.adjustTree(this, n1, n2);
 			}
 		}
 		return true;
 	}
 	
+	private void reinsert(RTNode node) { // Forced reinsert of R*-tree, remove the farthest children and insert them again
+		setEntry(usedSpace, node);
+		children.add(node);
+		node.setParent(this);
+		usedSpace ++;
+		int count = pickReinsert();
+		int[] far = rtree.buffers().far;
+		RTNode[] removed = new RTNode[count];
+		for (int i = 0; i < count; i ++) {
+			removed[i] = getChild(far[i]);
+		}
+		Arrays.sort(far, 0, count);
+		for (int i = count - 1; i >= 0; i --) { // Delete from the back so the indices stay valid
+			deleteData(far[i]);
+		}
+		((RTDirNode) getParent()).adjustTree(this, null);
+		for (int i = 0; i < removed.length; i ++) {
+			rtree.reinsert(removed[i]);
+		}
+	}
+	
 	private RTDirNode[] splitIndex(RTNode node) { // Split index node
-		int[][] group = null;
+		QueryStats stats = rtree.stats();
+		if (stats != null) { stats.splits ++; }
+		setEntry(usedSpace, node); // Place the new child in the spare slot
+		children.add(node);
+		node.setParent(this);
+		int n1;
 		switch (rtree.getTreeType()) { // Different type of split strategies
 		case Constants.RTREE_LINEAR:
+			n1 = linearSplit();
 			break;
 		case Constants.RTREE_QUADRATIC:
-			group = quadraticSplit(node.getNodeRectangle());
-			children.add(node);
-			node.parent = this;
+			n1 = quadraticSplit();
 			break;
 		case Constants.RTREE_EXPONENTIAL:
+			n1 = new ExponentialSplit(this).split();
 			break;
 		case Constants.RSTAR:
+			n1 = rstarSplit();
 			break;
 		default:
 			throw new IllegalStateException("Invalid tree type.");
@@ -133,27 +258,30 @@ public class RTDirNode extends RTNode {
 		
 		RTDirNode index1 = new RTDirNode(rtree, parent, level);
 		RTDirNode index2 = new RTDirNode(rtree, parent, level);
-		int[] group1 = group[0];
-		int[] group2 = group[1];
-		for (int i = 0; i < group1.length; i ++) {
-			index1.addData(datas[group1[i]]);
-			index1.children.add(this.children.get(group1[i]));
-			this.children.get(group1[i]).parent = index1;
-		}
-		for (int i = 0; i < group2.length; i ++) {
-			index2.addData(datas[group2[i]]);
-			index2.children.add(this.children.get(group2[i]));
-			this.children.get(group2[i]).parent = index2;
+		int[] order = rtree.buffers().order;
+		for (int i = 0; i < n1; i ++) {
+			index1.addChild(this, order[i]);
+		}
+		for (int i = n1; i <= usedSpace; i ++) {
+			index2.addChild(this, order[i]);
 		}
 		return new RTDirNode[] {index1, index2};
 	}
 	
+	protected int indexOf(RTNode child) { // Position of the child, looked up instead of kept on the node during updates
+		for (int i = 0; i < usedSpace; i ++) {
+			if (children.get(i) == child) { return i; }
+		}
+		throw new IllegalStateException("Node is not a child of this node.");
+	}
+	
 	@Override
 	protected RTDataNode findLeaf(Rectangle rec) {
+		QueryStats stats = rtree.stats();
+		if (stats != null) { stats.visit(this); }
 		for (int i = 0; i < usedSpace; i ++) {
-			if (datas[i].enclosure(rec)) {
-				deleteIndex = i;
-				RTDataNode leaf = children.get(i).findLeaf(rec);
+			if (encloses(i, rec)) {
+				RTDataNode leaf = getChild(i).findLeaf(rec);
 				if (leaf != null) { return leaf; }
 			}
 		}
@@ -161,13 +289,13 @@ public class RTDirNode extends RTNode {
 	}
 	
 	@Override
-	protected List<Rectangle> searchLeaf(Rectangle rec) {
-		List<Rectangle> res = new ArrayList<>();
+	protected void searchLeaf(Rectangle rec, List<Rectangle> res) {
+		QueryStats stats = rtree.stats();
+		if (stats != null) { stats.visit(this); }
 		for (int i = 0; i < usedSpace; i ++) {
-			if (rec.getUnion(datas[i]) != null) {
-				res.addAll(children.get(i).searchLeaf(rec));
+			if (intersects(i, rec)) {
+				getChild(i).searchLeaf(rec, res);
 			}
 		}
-		return res;
 	}
 }
\ No newline at end of file
@@ -1,38 +1,134 @@
 // Class for the node of R Tree. Two subclasses for data node and index node
+// The rectangles of the entries are kept in two flat primitive arrays instead of Rectangle objects,
+// entry i, dimension d lives at lows[i * dimension + d] / highs[i * dimension + d]
 
 package rtree;
 
+import java.util.Arrays;
 import java.util.List;
 
 public abstract class RTNode {
 	protected RTree rtree;
 	protected int level;
-	protected Rectangle[] datas;
+	protected int dimension;
+	protected double[] lows; // Low coordinates of all entries
+	protected double[] highs; // High coordinates of all entries
+	protected long[] hilberts; // Hilbert values of the entries in ascending order, the largest of the child for index entries (Hilbert tree only)
+	protected int[] counts; // Number of data under each entry, the aggregate of an aR-tree (index nodes only)
 	protected RTNode parent;
 	protected int usedSpace; // How many data are in this node currently
-	protected int insertIndex; // The next index to be inserted a new element
-	protected int deleteIndex; // The next index to be deleted
+	protected int epoch; // Version of the tree the node was made in, older nodes may be seen by snapshots and are copied before a change
+	protected int page = Constants.NIL; // Page of the node in a paged tree, NIL till it is first written
 	
 	public RTNode(RTree rtree, RTNode parent, int level) {
 		this.rtree = rtree;
 		this.parent = parent;
 		this.level = level;
-		datas = new Rectangle[rtree.getCapacity() + 1]; // +1 for splitting
+		dimension = rtree.getDimension();
+		lows = new double[(rtree.getCapacity() + 1) * dimension]; // +1 for splitting
+		highs = new double[(rtree.getCapacity() + 1) * dimension];
+		if (rtree.getTreeType() == Constants.HILBERT) { hilberts = new long[rtree.getCapacity() + 1]; }
+		if (level > 0) { counts = new int[rtree.getCapacity() + 1]; }
 		usedSpace = 0;
+		epoch = rtree.getEpoch();
+	}
+	
+	protected RTNode(RTree rtree, RTNode parent, int level, int page) { // Placeholder without entries for a node that is only on its page
+		this.rtree = rtree;
+		this.parent = parent;
+		this.level = level;
+		this.page = page;
+		dimension = rtree.getDimension();
 	}
 	
 	public RTNode getParent() { return parent; }
 	
-	protected void addData(Rectangle rec) {
-		if (usedSpace == rtree.getCapacity()) { throw new IllegalArgumentException("Node is full."); }
-		datas[usedSpace ++] = rec;
+	protected void setParent(RTNode parent) { // A node of an earlier update may be in snapshots and keeps its parent, see RTree.writable
+		if (epoch == rtree.getEpoch()) { this.parent = parent; }
+	}
+	
+	protected void setEntry(int i, Rectangle rec) { setEntry(i, rec.lows(), rec.highs(), 0); } // Copy the coordinates of the rectangle into entry i
+	
+	protected void setEntry(int i, double[] low, double[] high, int off) { // Copy the coordinates of a box in flat arrays into entry i
+		System.arraycopy(low, off, lows, i * dimension, dimension);
+		System.arraycopy(high, off, highs, i * dimension, dimension);
+		if (hilberts != null) { hilberts[i] = rtree.getHilbertCurve().index(low, high, off); }
+	}
+	
+	protected void setEntry(int i, RTNode node) { // Set entry i to the minimum rectangle that covers all data of the node
+		node.cover(lows, highs, i * dimension);
+		if (hilberts != null) { hilberts[i] = node.usedSpace > 0 ? node.hilberts[node.usedSpace - 1] : 0; }
+		if (counts != null) { counts[i] = node.count(); }
+	}
+	
+	protected int count() { // Number of data under the node, it must be in memory
+		if (counts == null) { return usedSpace; }
+		int count = 0;
+		for (int i = 0; i < usedSpace; i ++) {
+			count += counts[i];
+		}
+		return count;
+	}
+	
+	protected void cover(double[] low, double[] high, int off) { // Write the minimum rectangle that covers all data into the arrays
+		if (usedSpace == 0) {
+			for (int d = 0; d < dimension; d ++) {
+				low[off + d] = 0;
+				high[off + d] = 0;
+			}
+			return;
+		}
+		System.arraycopy(lows, 0, low, off, dimension);
+		System.arraycopy(highs, 0, high, off, dimension);
+		for (int j = 1; j < usedSpace; j ++) {
+			Geometry.include(low, high, off, lows, highs, j * dimension, dimension);
+		}
+	}
+	
+	protected void copyEntry(RTNode from, int src, int dst) { // Copy the coordinates of an entry of another node
+		System.arraycopy(from.lows, src * dimension, lows, dst * dimension, dimension);
+		System.arraycopy(from.highs, src * dimension, highs, dst * dimension, dimension);
+		if (hilberts != null) { hilberts[dst] = from.hilberts[src]; }
+		if (counts != null) { counts[dst] = from.counts[src]; }
+	}
+	
+	protected Rectangle getEntry(int i) { return new Rectangle(lows, highs, i * dimension, dimension, 0); } // Build a rectangle for entry i, only used outside of the hot paths
+	
+	protected double entryArea(int i) { return Geometry.area(lows, highs, i * dimension, dimension); }
+	
+	protected double enlargement(int i, Rectangle rec) { return enlargement(i, rec.lows(), rec.highs(), 0); } // Area enlargement of entry i when covering the rectangle
+	
+	protected double enlargement(int i, double[] low, double[] high, int off) {
+		return Geometry.enlargement(lows, highs, i * dimension, low, high, off, dimension);
+	}
+	
+	protected double intersectArea(int i, Rectangle rec) { // Calculate the area of intersection of entry i and the rectangle
+		return Geometry.intersectArea(lows, highs, i * dimension, rec.lows(), rec.highs(), 0, dimension);
+	}
+	
+	protected boolean intersects(int i, Rectangle rec) { // Judge if entry i intersects the rectangle
+		return Geometry.intersects(lows, highs, i * dimension, rec.lows(), rec.highs(), 0, dimension);
+	}
+	
+	protected boolean matches(int i, Rectangle rec) { // Judge if entry i has the same coordinates as the rectangle
+		return Geometry.equals(lows, highs, i * dimension, rec.lows(), rec.highs(), 0, dimension);
+	}
+	
+	protected boolean encloses(int i, Rectangle rec) { // Judge if the rectangle is inside entry i
+		return Geometry.contains(lows, highs, i * dimension, rec.lows(), rec.highs(), 0, dimension);
+	}
+	
+	protected boolean enclosedBy(Rectangle rec, int i) { // Judge if entry i is inside the rectangle
+		return Geometry.contains(rec.lows(), rec.highs(), 0, lows, highs, i * dimension, dimension);
 	}
 	
 	protected void deleteData(int i) {
-		if (datas[i + 1] != null) {
-			System.arraycopy(datas,  i + 1,  datas,  i,  usedSpace - i - 1);
-			datas[usedSpace - 1] = null;
-		} else { datas[i] = null; }
+		if (i < usedSpace - 1) {
+			System.arraycopy(lows, (i + 1) * dimension, lows, i * dimension, (usedSpace - i - 1) * dimension);
+			System.arraycopy(highs, (i + 1) * dimension, highs, i * dimension, (usedSpace - i - 1) * dimension);
+			if (hilberts != null) { System.arraycopy(hilberts, i + 1, hilberts, i, usedSpace - i - 1); }
+			if (counts != null) { System.arraycopy(counts, i + 1, counts, i, usedSpace - i - 1); }
+		}
 		usedSpace --;
 	}
 	
@@ -40,130 +136,330 @@ public abstract class RTNode {
 	// Relocate data to other nodes if this happens
 	// Might be done recursively till root if needed
 	protected void condenseTree(List<RTNode> list) {
+		QueryStats stats = rtree.stats();
+		if (stats != null) { stats.condenses ++; }
 		if (isRoot()) { // only one child for root, set it to new root
 			if (!isLeaf() && usedSpace == 1) {
 				RTDirNode root = (RTDirNode) this;
-				RTNode child = root.getChild(0);
-				root.children.remove(this);
-				child.parent = null;
-				rtree.setRoot(child);
+				rtree.setRoot(rtree.detached(root.getChild(0)));
 			}
 		} else {
 			RTNode parent = getParent();
 			int min = (int) Math.round(rtree.getCapacity() * rtree.getFillFactor()); // If the data capacity has reached its minimum
 			if (usedSpace < min) {
-				parent.deleteData(parent.deleteIndex);
-				((RTDirNode) parent).children.remove(this);
+				parent.deleteData(((RTDirNode) parent).indexOf(this)); // Also detaches this node from the parent's children
 				this.parent = null;
 				list.add(this);
-			} else { parent.datas[parent.deleteIndex] = getNodeRectangle(); }
+			} else { parent.setEntry(((RTDirNode) parent).indexOf(this), this); }
 			parent.condenseTree(list);
 		}
 	}
 	
-	// Split the node into two depends on the area, stop when one group reaches the minimum datas
-	// Divide data to two groups by making their corresponding rectangles have larger difference of area
-	protected int[][] quadraticSplit(Rectangle rec) {
-		if (rec == null) { throw new IllegalArgumentException("Rectangle cannot be null."); }
-		datas[usedSpace] = rec;
+	// Linear split of Guttman, the seeds are the pair with the greatest normalized separation on any dimension,
+	// the other entries are then assigned in a single pass to the group whose rectangle needs the least enlargement
+	// The overflowing entry must already be stored at index usedSpace. The groups are left in the order buffer of the tree,
+	// the size of the first one is returned, as for all the splits
+	protected int linearSplit() {
 		int total = usedSpace + 1;
-		int[] mask = new int[total];
+		int minSize = getMinSplitSize(total);
+		UpdateBuffers b = rtree.buffers();
+		linearPickSeeds(b.seeds);
+		int seed1 = b.seeds[0], seed2 = b.seeds[1];
+		int[] group1 = b.order;
+		int[] group2 = b.group;
+		int i1 = 0, i2 = 0;
+		group1[i1 ++] = seed1;
+		group2[i2 ++] = seed2;
+		
+		double[] low1 = b.low1, high1 = b.high1; // Rectangles of the two groups
+		double[] low2 = b.low2, high2 = b.high2;
+		System.arraycopy(lows, seed1 * dimension, low1, 0, dimension);
+		System.arraycopy(highs, seed1 * dimension, high1, 0, dimension);
+		System.arraycopy(lows, seed2 * dimension, low2, 0, dimension);
+		System.arraycopy(highs, seed2 * dimension, high2, 0, dimension);
+		
+		int rem = total - 2;
 		for (int i = 0; i < total; i ++) {
-			mask[i] = 1;
+			if (i == seed1 || i == seed2) { continue; }
+			boolean first;
+			if (minSize - i1 == rem) { first = true; } // The rest is needed to reach the minimum
+			else if (minSize - i2 == rem) { first = false; }
+			else {
+				int off = i * dimension;
+				double diff1 = Geometry.enlargement(low1, high1, 0, lows, highs, off, dimension);
+				double diff2 = Geometry.enlargement(low2, high2, 0, lows, highs, off, dimension);
+				if (diff1 != diff2) { first = diff1 < diff2; } // Firstly, area difference
+				else {
+					double area1 = Geometry.area(low1, high1, 0, dimension);
+					double area2 = Geometry.area(low2, high2, 0, dimension);
+					if (area1 != area2) { first = area1 < area2; } // Secondly, area
+					else { first = i1 <= i2; } // Lastly, amount of data
+				}
+			}
+			if (first) {
+				group1[i1 ++] = i;
+				Geometry.include(low1, high1, 0, lows, highs, i * dimension, dimension);
+			} else {
+				group2[i2 ++] = i;
+				Geometry.include(low2, high2, 0, lows, highs, i * dimension, dimension);
+			}
+			rem --;
 		}
-		
-		int c = total / 2 + 1;
-		int minSize = (int) Math.round(rtree.getCapacity() * rtree.getFillFactor()); // Minimum data
-		if (minSize < 2) { minSize = 2; }
+		System.arraycopy(group2, 0, group1, i1, i2);
+		return i1;
+	}
+	
+	// On each dimension, find the entry with the highest low side and the one with the lowest high side,
+	// normalize their separation by the width of all entries on that dimension, and pick the pair with the greatest one
+	protected void linearPickSeeds(int[] seeds) {
+		int total = usedSpace + 1;
+		double best = Double.NEGATIVE_INFINITY;
+		int s1 = 0, s2 = 1;
+		for (int d = 0; d < dimension; d ++) {
+			int highestLow = 0, lowestHigh = 0;
+			double minLow = lows[d], maxHigh = highs[d];
+			for (int i = 1; i < total; i ++) {
+				int off = i * dimension + d;
+				if (lows[off] > lows[highestLow * dimension + d]) { highestLow = i; }
+				if (highs[off] < highs[lowestHigh * dimension + d]) { lowestHigh = i; }
+				minLow = Math.min(minLow, lows[off]);
+				maxHigh = Math.max(maxHigh, highs[off]);
+			}
+			if (highestLow == lowestHigh) { // The same entry, take the next best for the high side
+				lowestHigh = highestLow == 0 ? 1 : 0;
+				for (int i = 0; i < total; i ++) {
+					if (i != highestLow && highs[i * dimension + d] < highs[lowestHigh * dimension + d]) { lowestHigh = i; }
+				}
+			}
+			double width = maxHigh - minLow;
+			double separation = lows[highestLow * dimension + d] - highs[lowestHigh * dimension + d];
+			if (width > 0) { separation /= width; }
+			if (separation > best) {
+				best = separation;
+				s1 = lowestHigh;
+				s2 = highestLow;
+			}
+		}
+		seeds[0] = s1;
+		seeds[1] = s2;
+	}
+	
+	// Split the node into two depends on the area, stop when one group reaches the minimum datas
+	// Divide data to two groups by making their corresponding rectangles have larger difference of area
+	// The overflowing entry must already be stored at index usedSpace
+	protected int quadraticSplit() {
+		int total = usedSpace + 1;
+		UpdateBuffers b = rtree.buffers();
+		boolean[] assigned = b.assigned;
+		Arrays.fill(assigned, 0, total, false);
+		int minSize = getMinSplitSize(total);
 		int rem = total;
-		int[] group1 = new int[c];
-		int[] group2 = new int[c];
+		int[] group1 = b.order;
+		int[] group2 = b.group;
 		int i1 = 0, i2 = 0;
-		int[] seed = pickSeeds();
-		group1[i1 ++] = seed[0];
-		group2[i2 ++] = seed[1];
+		pickSeeds(b.seeds);
+		int seed1 = b.seeds[0], seed2 = b.seeds[1];
+		group1[i1 ++] = seed1;
+		group2[i2 ++] = seed2;
 		rem -= 2;
-		mask[group1[0]] = -1;
-		mask[group2[0]] = -1;
+		assigned[seed1] = true;
+		assigned[seed2] = true;
+		
+		double[] low1 = b.low1, high1 = b.high1; // Rectangles of the two groups
+		double[] low2 = b.low2, high2 = b.high2;
+		System.arraycopy(lows, seed1 * dimension, low1, 0, dimension);
+		System.arraycopy(highs, seed1 * dimension, high1, 0, dimension);
+		System.arraycopy(lows, seed2 * dimension, low2, 0, dimension);
+		System.arraycopy(highs, seed2 * dimension, high2, 0, dimension);
 		
 		while (rem > 0) {
 			if (minSize - i1 == rem) { // Fewer data than the minimum value
 				for (int i = 0; i < total; i ++) {
-					if (mask[i] != -1) {
+					if (!assigned[i]) {
 						group1[i1 ++] = i;
-						mask[i] = -1;
+						assigned[i] = true;
 						rem --;
 					}
 				}
 			} else if (minSize - i2 == rem) { // Fewer data than the minimum value
 				for (int i = 0; i < total; i ++) {
-					if (mask[i] != -1) {
+					if (!assigned[i]) {
 						group2[i2 ++] = i;
-						mask[i] = -1;
+						assigned[i] = true;
 						rem --;
 					}
 				}
 			} else {
-				Rectangle r1 = (Rectangle) datas[group1[0]].clone();
-				for (int i = 1; i < i1; i ++) {
-					r1 = r1.getUnion(datas[group1[i]]);
-				}
-				Rectangle r2 = (Rectangle) datas[group1[0]].clone();
-				for (int i = 1; i < i2; i ++) {
-					r2 = r2.getUnion(datas[group2[i]]);
-				}
+				double area1 = Geometry.area(low1, high1, 0, dimension);
+				double area2 = Geometry.area(low2, high2, 0, dimension);
 				
 				// Get next splitting index
 				double dif = Double.NEGATIVE_INFINITY;
-				double areaDiff1 = 0, areaDiff2 = 0;
+				double selDiff1 = 0, selDiff2 = 0;
 				int sel = -1;
 				for (int i = 0; i < total; i ++) {
-					if (mask[i] != -1) {
-						Rectangle a = r1.getUnion(datas[i]);
-						areaDiff1 = a.getArea() - r1.getArea();
-						Rectangle b = r2.getUnion(datas[i]);
-						areaDiff2 = b.getArea() - r2.getArea();
+					if (!assigned[i]) {
+						double areaDiff1 = Geometry.enlargement(low1, high1, 0, lows, highs, i * dimension, dimension);
+						double areaDiff2 = Geometry.enlargement(low2, high2, 0, lows, highs, i * dimension, dimension);
 						if (Math.abs(areaDiff1 - areaDiff2) > dif) {
 							dif = Math.abs(areaDiff1 - areaDiff2);
 							sel = i;
+							selDiff1 = areaDiff1;
+							selDiff2 = areaDiff2;
 						}
 					}
 				}
 				
-				if (areaDiff1 < areaDiff2) { group1[i1 ++] = sel; } // Firstly, area difference
-				else if (areaDiff1 > areaDiff2) { group2[i2 ++] = sel; }
-				else if (r1.getArea() < r2.getArea()) { group1[i1 ++] = sel; } // Secondly, area
-				else if (r1.getArea() > r2.getArea()) { group2[i2 ++] = sel; }
-				else if (i1 < i2) { group1[i1 ++] = sel; } // Lastly, amount of data
-				else if (i1 > i2) { group2[i2 ++] = sel; }
-				else { group1[i1 ++] = sel; }
+				boolean first;
+				if (selDiff1 < selDiff2) { first = true; } // Firstly, area difference
+				else if (selDiff1 > selDiff2) { first = false; }
+				else if (area1 < area2) { first = true; } // Secondly, area
+				else if (area1 > area2) { first = false; }
+				else { first = i1 <= i2; } // Lastly, amount of data
 				
-				mask[sel] = -1;
+				if (first) {
+					group1[i1 ++] = sel;
+					Geometry.include(low1, high1, 0, lows, highs, sel * dimension, dimension);
+				} else {
+					group2[i2 ++] = sel;
+					Geometry.include(low2, high2, 0, lows, highs, sel * dimension, dimension);
+				}
+				assigned[sel] = true;
 				rem --;
 			}
 		}
+		System.arraycopy(group2, 0, group1, i1, i2);
+		return i1;
+	}
+	
+	// Split of R*-tree, the axis is chosen by the least sum of margins over all distributions of both sortings,
+	// then the distribution on that axis with the least overlap, and the least area if overlaps are equal
+	// The overflowing entry must already be stored at index usedSpace
+	protected int rstarSplit() {
+		int total = usedSpace + 1;
+		int minSize = getMinSplitSize(total);
+		UpdateBuffers b = rtree.buffers();
+		int[] order = b.order;
+		double[] preLows = b.preLows, preHighs = b.preHighs; // Rectangles of the first k entries
+		double[] sufLows = b.sufLows, sufHighs = b.sufHighs; // Rectangles of the entries from k on
+		
+		int bestAxis = 0;
+		double bestMargin = Double.POSITIVE_INFINITY;
+		for (int axis = 0; axis < dimension; axis ++) {
+			double margin = 0;
+			for (int s = 0; s < 2; s ++) { // Sorted by low, then by high
+				sortEntries(order, total, axis, s == 1);
+				prefixCovers(order, total, preLows, preHighs, sufLows, sufHighs);
+				for (int k = minSize; k <= total - minSize; k ++) { // The first group gets k entries
+					margin += Geometry.margin(preLows, preHighs, (k - 1) * dimension, dimension) + Geometry.margin(sufLows, sufHighs, k * dimension, dimension);
+				}
+			}
+			if (margin < bestMargin) {
+				bestMargin = margin;
+				bestAxis = axis;
+			}
+		}
 		
-		int[][] res = new int[2][];
-		res[0] = new int[i1];
-		res[1] = new int[i2];
-		for (int i = 0; i < i1; i ++) {
-			res[0][i] = group1[i];
+		double bestOverlap = Double.POSITIVE_INFINITY, bestArea = Double.POSITIVE_INFINITY;
+		int bestSort = 0, bestK = minSize;
+		for (int s = 0; s < 2; s ++) {
+			sortEntries(order, total, bestAxis, s == 1);
+			prefixCovers(order, total, preLows, preHighs, sufLows, sufHighs);
+			for (int k = minSize; k <= total - minSize; k ++) {
+				int o1 = (k - 1) * dimension, o2 = k * dimension;
+				double overlap = Geometry.intersectArea(preLows, preHighs, o1, sufLows, sufHighs, o2, dimension);
+				double area = Geometry.area(preLows, preHighs, o1, dimension) + Geometry.area(sufLows, sufHighs, o2, dimension);
+				if (overlap < bestOverlap || (overlap == bestOverlap && area < bestArea)) {
+					bestOverlap = overlap;
+					bestArea = area;
+					bestSort = s;
+					bestK = k;
+				}
+			}
 		}
-		for (int i = 0; i < i2; i ++) {
-			res[1][i] = group2[i];
+		
+		sortEntries(order, total, bestAxis, bestSort == 1);
+		return bestK;
+	}
+	
+	private void sortEntries(int[] order, int n, int axis, boolean byHigh) { // Insertion sort of all entries on the axis, ties broken by the other bound
+		double[] first = byHigh ? highs : lows;
+		double[] second = byHigh ? lows : highs;
+		for (int i = 0; i < n; i ++) {
+			int e = order[i] = i;
+			int off = e * dimension + axis;
+			int j = i - 1;
+			while (j >= 0) {
+				int o = order[j] * dimension + axis;
+				if (first[o] < first[off] || (first[o] == first[off] && second[o] <= second[off])) { break; }
+				order[j + 1] = order[j];
+				j --;
+			}
+			order[j + 1] = e;
+		}
+	}
+	
+	// For the sorted entries, write the rectangle covering the first k + 1 entries and the one covering the entries from k on at k
+	private void prefixCovers(int[] order, int n, double[] preLows, double[] preHighs, double[] sufLows, double[] sufHighs) {
+		System.arraycopy(lows, order[0] * dimension, preLows, 0, dimension);
+		System.arraycopy(highs, order[0] * dimension, preHighs, 0, dimension);
+		for (int k = 1; k < n; k ++) {
+			System.arraycopy(preLows, (k - 1) * dimension, preLows, k * dimension, dimension);
+			System.arraycopy(preHighs, (k - 1) * dimension, preHighs, k * dimension, dimension);
+			Geometry.include(preLows, preHighs, k * dimension, lows, highs, order[k] * dimension, dimension);
+		}
+		System.arraycopy(lows, order[n - 1] * dimension, sufLows, (n - 1) * dimension, dimension);
+		System.arraycopy(highs, order[n - 1] * dimension, sufHighs, (n - 1) * dimension, dimension);
+		for (int k = n - 2; k >= 0; k --) {
+			System.arraycopy(sufLows, (k + 1) * dimension, sufLows, k * dimension, dimension);
+			System.arraycopy(sufHighs, (k + 1) * dimension, sufHighs, k * dimension, dimension);
+			Geometry.include(sufLows, sufHighs, k * dimension, lows, highs, order[k] * dimension, dimension);
 		}
-		return res;
+	}
+	
+	// Entries for the forced reinsert of R*-tree, the ones whose centers are the farthest from the center of the node
+	// They are left in the far buffer of the tree closest first, as reinserting in that order works better, and counted
+	protected int pickReinsert() {
+		int count = (int) Math.round(rtree.getCapacity() * Constants.RSTAR_REINSERT_FACTOR);
+		count = Math.max(1, Math.min(count, usedSpace - getMinSplitSize(usedSpace)));
+		UpdateBuffers b = rtree.buffers();
+		double[] low = b.coverLow, high = b.coverHigh;
+		cover(low, high, 0);
+		double[] dist = b.dist;
+		for (int i = 0; i < usedSpace; i ++) {
+			dist[i] = 0;
+			for (int d = 0; d < dimension; d ++) {
+				double diff = (lows[i * dimension + d] + highs[i * dimension + d]) / 2 - (low[d] + high[d]) / 2;
+				dist[i] += diff * diff;
+			}
+		}
+		
+		int[] order = b.order; // Sort by distance, farthest first
+		for (int i = 0; i < usedSpace; i ++) {
+			int j = i - 1;
+			while (j >= 0 && dist[order[j]] < dist[i]) {
+				order[j + 1] = order[j];
+				j --;
+			}
+			order[j + 1] = i;
+		}
+		for (int i = 0; i < count; i ++) {
+			b.far[i] = order[count - 1 - i];
+		}
+		return count;
 	}
 	
 	// Calculate the area of U - R1 - R2, where U is the union rectangle of R1 and R2
 	// Pick the 2 rectangles with the largest area of U - R1 - R2 as seeds
-	protected int[] pickSeeds() {
+	protected void pickSeeds(int[] seeds) {
 		double inefficiency = Double.NEGATIVE_INFINITY;
 		int i1 = 0, i2 = 0;
 		for (int i = 0; i < usedSpace; i ++) {
+			int oi = i * dimension;
+			double areaI = Geometry.area(lows, highs, oi, dimension);
 			for (int j = i + 1; j <= usedSpace; j ++) {
-				Rectangle rec = datas[i].getUnion(datas[j]);
-				double d = rec.getArea() - datas[i].getArea() - datas[j].getArea();
+				int oj = j * dimension;
+				double d = Geometry.unionArea(lows, highs, oi, lows, highs, oj, dimension) - areaI - Geometry.area(lows, highs, oj, dimension);
 				if (d > inefficiency) {
 					inefficiency = d;
 					i1 = i;
@@ -171,23 +467,178 @@ public abstract class RTNode {
 				}
 			}
 		}
-		return new int[] {i1, i2};
+		seeds[0] = i1;
+		seeds[1] = i2;
 	}
 	
-	public Rectangle getNodeRectangle() { // Get the minimum rectangle that covers all of its data
-		if (usedSpace > 0) {
-			Rectangle[] rec = new Rectangle[usedSpace];
-			System.arraycopy(datas, 0, rec, 0, usedSpace);
-			return Rectangle.getUnion(rec);
+	protected int getMinSplitSize(int total) { // Minimum data of each group after a split
+		int minSize = (int) Math.round(rtree.getCapacity() * rtree.getFillFactor());
+		if (minSize < 2) { minSize = 2; }
+		if (minSize > total / 2) { minSize = total / 2; }
+		return minSize;
+	}
+	
+	// Insertion of the Hilbert tree, the entries of every node are kept in ascending order of their Hilbert values
+	// A full node shares its entries with a sibling first, only when both are full they are split into three nodes
+	protected void insertHilbert(double[] low, double[] high, int off, long h, int count, Object payload) {
+		int pos = 0;
+		while (pos < usedSpace && hilberts[pos] <= h) { pos ++; }
+		if (usedSpace < rtree.getCapacity()) {
+			insertEntry(pos, low, high, off, h, count, payload);
+			adjustHilbert();
+			return;
+		}
+		
+		RTDirNode p = (RTDirNode) parent;
+		RTNode sibling = null;
+		RTNode first = this, second = null; // The two nodes in the order of the parent
+		if (p != null && p.usedSpace > 1) {
+			int j = p.children.indexOf(this);
+			if (j + 1 < p.usedSpace) {
+				sibling = rtree.writable(p.getChild(j + 1));
+				second = sibling;
+			} else {
+				sibling = rtree.writable(p.getChild(j - 1));
+				first = sibling;
+				second = this;
+			}
+		}
+		
+		// Collect the entries of both nodes and the new one in Hilbert order, the buffers are emptied by fill before going up
+		int total = usedSpace + 1 + (sibling == null ? 0 : sibling.usedSpace);
+		UpdateBuffers b = rtree.buffers();
+		double[] bufLows = b.entryLows;
+		double[] bufHighs = b.entryHighs;
+		long[] bufHilberts = b.entryHilberts;
+		int[] bufCounts = b.entryCounts;
+		Object[] bufPayloads = b.entryPayloads;
+		int k = 0;
+		for (int s = 0; s < (second == null ? 1 : 2); s ++) {
+			RTNode node = s == 0 ? first : second;
+			for (int i = 0; i <= node.usedSpace; i ++) {
+				if (node == this && i == pos) {
+					System.arraycopy(low, off, bufLows, k * dimension, dimension);
+					System.arraycopy(high, off, bufHighs, k * dimension, dimension);
+					bufHilberts[k] = h;
+					bufCounts[k] = count;
+					bufPayloads[k ++] = payload;
+				}
+				if (i < node.usedSpace) {
+					System.arraycopy(node.lows, i * dimension, bufLows, k * dimension, dimension);
+					System.arraycopy(node.highs, i * dimension, bufHighs, k * dimension, dimension);
+					bufHilberts[k] = node.hilberts[i];
+					if (counts != null) { bufCounts[k] = node.counts[i]; }
+					bufPayloads[k ++] = node.getPayload(i);
+				}
+			}
+		}
+		
+		if (sibling != null && total <= 2 * rtree.getCapacity()) { // Redistribute between the two nodes
+			int n1 = total - total / 2;
+			first.fill(bufLows, bufHighs, bufHilberts, bufCounts, bufPayloads, 0, n1);
+			second.fill(bufLows, bufHighs, bufHilberts, bufCounts, bufPayloads, n1, total - n1);
+			p.setEntry(p.children.indexOf(first), first);
+			p.setEntry(p.children.indexOf(second), second);
+			p.adjustHilbert();
+			return;
+		}
+		
+		QueryStats stats = rtree.stats();
+		if (stats != null) { stats.splits ++; }
+		RTNode extra = newSibling();
+		if (sibling == null) { // Nothing to share with, split into two
+			int n1 = total - total / 2;
+			fill(bufLows, bufHighs, bufHilberts, bufCounts, bufPayloads, 0, n1);
+			extra.fill(bufLows, bufHighs, bufHilberts, bufCounts, bufPayloads, n1, total - n1);
+			if (isRoot()) {
+				RTDirNode newRoot = new RTDirNode(rtree, Constants.NULL, level + 1);
+				newRoot.addChild(this);
+				newRoot.addChild(extra);
+				rtree.setRoot(newRoot);
+				return;
+			}
+			p.setEntry(p.children.indexOf(this), this);
+		} else { // Split two full nodes into three
+			int n1 = (total + 2) / 3, n2 = (total + 1) / 3;
+			first.fill(bufLows, bufHighs, bufHilberts, bufCounts, bufPayloads, 0, n1);
+			extra.fill(bufLows, bufHighs, bufHilberts, bufCounts, bufPayloads, n1, n2);
+			second.fill(bufLows, bufHighs, bufHilberts, bufCounts, bufPayloads, n1 + n2, total - n1 - n2);
+			p.setEntry(p.children.indexOf(first), first);
+			p.setEntry(p.children.indexOf(second), second);
+		}
+		double[] extraLow = b.coverLow, extraHigh = b.coverHigh; // Copied by the parent before it takes the buffers
+		extra.cover(extraLow, extraHigh, 0);
+		p.insertHilbert(extraLow, extraHigh, 0, extra.hilberts[extra.usedSpace - 1], extra.count(), extra);
+	}
+	
+	protected void adjustHilbert() { // Refresh the entries of the nodes on the way up to the root
+		RTNode node = this;
+		while (!node.isRoot()) {
+			RTDirNode p = (RTDirNode) node.parent;
+			p.setEntry(p.children.indexOf(node), node);
+			node = p;
 		}
-		return new Rectangle(new Point(new double[] {0, 0}), new Point(new double[] {0, 0}));
+	}
+	
+	private void insertEntry(int pos, double[] low, double[] high, int off, long h, int count, Object payload) { // Insert an entry at the position, shifting the following ones
+		int n = usedSpace - pos;
+		System.arraycopy(lows, pos * dimension, lows, (pos + 1) * dimension, n * dimension);
+		System.arraycopy(highs, pos * dimension, highs, (pos + 1) * dimension, n * dimension);
+		System.arraycopy(hilberts, pos, hilberts, pos + 1, n);
+		System.arraycopy(low, off, lows, pos * dimension, dimension);
+		System.arraycopy(high, off, highs, pos * dimension, dimension);
+		hilberts[pos] = h;
+		if (counts != null) {
+			System.arraycopy(counts, pos, counts, pos + 1, n);
+			counts[pos] = count;
+		}
+		insertPayload(pos, payload);
+		usedSpace ++;
+	}
+	
+	private void fill(double[] bufLows, double[] bufHighs, long[] bufHilberts, int[] bufCounts, Object[] bufPayloads, int from, int count) { // Replace the entries by a range of the buffers
+		clearEntries();
+		System.arraycopy(bufLows, from * dimension, lows, 0, count * dimension);
+		System.arraycopy(bufHighs, from * dimension, highs, 0, count * dimension);
+		System.arraycopy(bufHilberts, from, hilberts, 0, count);
+		if (counts != null) { System.arraycopy(bufCounts, from, counts, 0, count); }
+		for (int i = 0; i < count; i ++) {
+			insertPayload(i, bufPayloads[from + i]);
+			bufPayloads[from + i] = null; // The buffer doesn't keep the node alive
+			usedSpace ++;
+		}
+	}
+	
+	protected void clearEntries() { usedSpace = 0; }
+	
+	protected void copyEntries(RTNode from) { // Take over all entries of the node, the payloads are left to the subclasses
+		System.arraycopy(from.lows, 0, lows, 0, from.usedSpace * dimension);
+		System.arraycopy(from.highs, 0, highs, 0, from.usedSpace * dimension);
+		if (hilberts != null) { System.arraycopy(from.hilberts, 0, hilberts, 0, from.usedSpace); }
+		if (counts != null) { System.arraycopy(from.counts, 0, counts, 0, from.usedSpace); }
+		usedSpace = from.usedSpace;
+	}
+	
+	protected abstract RTNode copy(); // A new node with the same entries, in the current epoch
+	
+	protected abstract Object getPayload(int i); // The data of a leaf entry or the child of an index entry
+	
+	protected abstract void insertPayload(int i, Object payload); // Shift the payloads from i on and put the new one at i
+	
+	protected abstract RTNode newSibling(); // An empty node of the same kind and level under the same parent
+	
+	public Rectangle getNodeRectangle() { // Get the minimum rectangle that covers all of its data
+		double[] min = new double[dimension];
+		double[] max = new double[dimension];
+		cover(min, max, 0);
+		return new Rectangle(new Point(min), new Point(max));
 	}
 	
 	@Override
 	public String toString() {
 		String res = "{";
-		for (int i = 0; i < datas.length; i ++) {
-			res += datas[i] + ", ";
+		for (int i = 0; i < usedSpace; i ++) {
+			res += getEntry(i) + ", ";
 		}
 		res += "}";
 		return res;
@@ -199,9 +650,11 @@ public abstract class RTNode {
 	
 	public boolean isLeaf() { return level == 0; }
 	
-	protected abstract RTDataNode chooseLeaf(Rectangle rec);
+	protected RTDataNode chooseLeaf(Rectangle rec) { return chooseLeaf(rec.lows(), rec.highs(), 0); }
+	
+	protected abstract RTDataNode chooseLeaf(double[] low, double[] high, int off); // The leaf to take a new rectangle, given in flat arrays
 	
 	protected abstract RTDataNode findLeaf(Rectangle rec);
 	
-	protected abstract List<Rectangle> searchLeaf(Rectangle rec);
+	protected abstract void searchLeaf(Rectangle rec, List<Rectangle> res); // Add the data inside the rectangle to res
 }
\ No newline at end of file
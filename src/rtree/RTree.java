@@ -1,13 +1,21 @@
 package rtree;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.jfree.ui.RefineryUtilities;
 
@@ -17,126 +25,946 @@ public class RTree {
 	private int capacity = -1;
 	private double fillFactor = -1;
 	private int dimension;
-	private List<Rectangle> skyline = new ArrayList<>();
+	private SkylineIndex skyline; // Live skyline, null till it is first asked for
+	private HilbertCurve hilbertCurve; // Only for Hilbert trees
+	private long reinsertedLevels; // Levels that had a forced reinsert during the current insertion (R*-tree)
+	private boolean copyOnWrite; // Updates copy the nodes they change, so that snapshots never change
+	private int epoch; // Version of the tree, goes up with every update in copy-on-write mode
+	private volatile RTNode published; // Root after the last finished update, for snapshots
+	private TreeMetrics metrics; // Null when metrics are off
+	private LongMap<RTDataNode> leaves; // Leaf of every entry with an id, null till the first insertWithId
+	private long nextId = 1;
+	private double updateSlack = 0.1; // Share of its extent a leaf may grow by on each side to keep a moved entry
+	private UpdateBuffers buffers; // Working arrays of the node algorithms, null in a read-only view
+	
+	protected RTree(RTree tree, RTNode root) { // Read-only view of the tree at the given root
+		capacity = tree.capacity;
+		fillFactor = tree.fillFactor;
+		treeType = tree.treeType;
+		dimension = tree.dimension;
+		hilbertCurve = tree.hilbertCurve;
+		metrics = tree.metrics;
+		this.root = root;
+	}
 	
 	public RTree(int capacity, double fillFactor, int treeType, int dimension) {
+		if (treeType == Constants.RTREE_EXPONENTIAL && capacity > ExponentialSplit.MAX_CAPACITY) {
+			throw new IllegalArgumentException("Exponential split supports a capacity up to " + ExponentialSplit.MAX_CAPACITY + ".");
+		}
 		this.capacity = capacity;
 		this.fillFactor = fillFactor;
 		this.treeType = treeType;
 		this.dimension = dimension;
+		if (treeType == Constants.HILBERT) { hilbertCurve = new HilbertCurve(dimension); } // Space unknown till the first bulk load
+		buffers = new UpdateBuffers(capacity, dimension);
 		root = new RTDataNode(this, Constants.NULL);
 	}
 	
 	public int getDimension() { return dimension; }
 	
+	public RTNode getRoot() { return root; }
+	
 	public void setRoot(RTNode root) { this.root = root; }
 	
 	public double getFillFactor() { return fillFactor; }
 	
+	public double getUpdateSlack() { return updateSlack; }
+	
+	public void setUpdateSlack(double updateSlack) {
+		if (updateSlack < 0) { throw new IllegalArgumentException("Update slack cannot be negative."); }
+		this.updateSlack = updateSlack;
+	}
+	
 	public int getCapacity() { return capacity; }
 	
 	public int getTreeType() { return treeType; }
 	
+	public HilbertCurve getHilbertCurve() { return hilbertCurve; }
+	
+	protected void setHilbertCurve(HilbertCurve hilbertCurve) { this.hilbertCurve = hilbertCurve; }
+	
+	protected int getEpoch() { return epoch; }
+	
+	protected long getNextId() { return nextId; }
+	
+	protected void setNextId(long nextId) { // Go on with the ids of a loaded tree, its entries with ids are placed again
+		this.nextId = nextId;
+		if (nextId > 1 && leaves == null) { leaves = new LongMap<>(); }
+	}
+	
+	public TreeMetrics getMetrics() { return metrics; }
+	
+	public void setMetrics(TreeMetrics metrics) { this.metrics = metrics; } // Null turns the metrics off, set it before the tree is shared
+	
+	protected UpdateBuffers buffers() { return buffers; }
+	
+	protected QueryStats stats() { return metrics == null ? null : metrics.current(); } // Stats of the running operation, null if not measured
+	
+	private QueryStats beginStats(String operation) { return metrics == null ? null : metrics.begin(operation); }
+	
+	private void endStats(QueryStats stats) {
+		if (stats != null) { stats.metrics.end(stats); }
+	}
+	
+	public static RTree bulkLoad(List<Rectangle> recs, int capacity, double fillFactor, int treeType, int dimension) { // Build a packed tree
+		RTree tree = new RTree(capacity, fillFactor, treeType, dimension);
+		tree.bulkLoad(recs);
+		return tree;
+	}
+	
+	public void bulkLoad(List<Rectangle> recs) { bulkLoad(recs, getBulkLoader()); }
+	
+	public void bulkLoad(List<Rectangle> recs, BulkLoader loader) { // Rebuild the tree from its current data and the given rectangles
+		if (recs == null) { throw new IllegalArgumentException("Rectangle list cannot be null."); }
+		if (loader == null) { throw new IllegalArgumentException("Bulk loader cannot be null."); }
+		if (treeType == Constants.HILBERT && !(loader instanceof HilbertLoader)) { throw new IllegalArgumentException("Hilbert tree must be packed in Hilbert order."); }
+		QueryStats stats = beginStats("bulkLoad");
+		try {
+			loader.add(root); // Streamed from the leaves, no list of the data is built
+			for (int i = 0; i < recs.size(); i ++) {
+				loader.add(plain(recs.get(i)));
+			}
+			if (treeType == Constants.HILBERT) { hilbertCurve = loader.bounding(); } // Hilbert values over the space of the data
+			beginUpdate();
+			root = loader.load();
+			skyline = null; // Computed again on demand
+			endUpdate();
+		} finally { endStats(stats); }
+	}
+	
+	public void save(Path path) throws IOException { TreeFormat.save(this, path); } // Binary file of the tree structure, loaded without rebuilding
+	
+	public static RTree load(Path path) throws IOException { return TreeFormat.load(path); }
+	
+	public BulkLoader getBulkLoader() { // The default bulk loader of the tree type
+		if (treeType == Constants.HILBERT) { return new HilbertLoader(this); }
+		return new STRLoader(this);
+	}
+	
+	public TreeQuality analyze() { return new TreeQuality(this, root); }
+	
+	public TreeQuality analyze(RTNode node) { return new TreeQuality(this, node); }
+	
+	public void rebuild() { bulkLoad(new ArrayList<Rectangle>()); } // Pack the whole tree again
+	
+	// Pack the subtree of the node again in place. A packed subtree is often lower than the grown one, it can't replace
+	// the node then and the subtree is cut off instead, its data are inserted again as a batch, which still spreads them
+	// over fuller nodes
+	public void rebuild(RTNode node) {
+		if (node == null) { throw new IllegalArgumentException("Node cannot be null."); }
+		if (!isAttached(node)) { throw new IllegalArgumentException("Node is not in the tree."); }
+		if (node.isRoot()) {
+			rebuild();
+			return;
+		}
+		QueryStats stats = beginStats("rebuild");
+		try {
+			beginUpdate();
+			RTNode old = writable(node);
+			List<Rectangle> points = getPoints(old);
+			RTNode packed = getBulkLoader().load(points);
+			int min = (int) Math.round(capacity * fillFactor);
+			RTDirNode parent = (RTDirNode) old.parent;
+			int i = parent.indexOf(old);
+			if (packed.level == old.level && packed.usedSpace >= min) {
+				parent.children.set(i, packed);
+				packed.parent = parent;
+				parent.setEntry(i, packed);
+				old.parent = null;
+			} else {
+				parent.deleteData(i);
+				old.parent = null;
+				List<RTNode> removed = new ArrayList<>(); // Nodes that got too empty on the way up, as on deletion
+				parent.condenseTree(removed);
+				for (int j = 0; j < removed.size(); j ++) {
+					points.addAll(getPoints(removed.get(j)));
+				}
+				insertGroup(root, points);
+			}
+			endUpdate();
+		} finally { endStats(stats); }
+	}
+	
+	// Empty tree of the same layout to build nodes in while others update this one. The leaves of the ids go to a map of
+	// its own, swapRoot takes over the nodes and the map
+	protected RTree scratch() {
+		RTree res = new RTree(this, null);
+		res.metrics = null;
+		res.leaves = new LongMap<>();
+		return res;
+	}
+	
+	protected void adopt(RTNode root) { // The nodes built in a scratch tree become this tree's, before they are put in
+		List<RTNode> nodes = traversePost(root);
+		for (int k = 0; k < nodes.size(); k ++) {
+			nodes.get(k).rtree = this;
+		}
+	}
+	
+	// Put in the adopted tree built apart from older data in the scratch tree, then redo the writes made since: the
+	// inserted entries (deleted false) and the deleted ones in their order, as stored with their ids. The skyline already
+	// has them and stays. The nodes are older than this update, so later updates copy them like the nodes of snapshots
+	protected void swapRoot(RTNode root, RTree scratch, List<Rectangle> writes, BitSet deleted) {
+		beginUpdate();
+		leaves = scratch.leaves;
+		this.root = root;
+		for (int i = 0; i < writes.size(); i ++) {
+			Rectangle rec = writes.get(i);
+			if (!deleted.get(i)) {
+				insertData(rec);
+				continue;
+			}
+			if (rec.getId() != 0) {
+				RTDataNode leaf = leaves.get(rec.getId());
+				if (leaf != null) {
+					leaf = (RTDataNode) writable(leaf);
+					leaf.delete(leaf.indexOf(rec.getId()));
+				}
+				continue;
+			}
+			RTDataNode leaf = this.root.findLeaf(rec);
+			if (leaf != null) { ((RTDataNode) writable(leaf)).delete(rec); }
+		}
+		endUpdate();
+	}
+	
 	public boolean insert(Rectangle rec) {
 		if (rec == null) { throw new IllegalArgumentException("Rectangle cannot be null."); }
-		if (rec.getLow().getDimension() != getDimension()) { throw new IllegalArgumentException("Rectangle dimension different than RTree dimension."); }
-		RTDataNode leaf = root.chooseLeaf(rec);
-		boolean res = leaf.insert(rec);
-		
-		// Uncomment this to update skyline for each insertion (program will be slowed when doing a massive deletion)
-		/*List<Rectangle> sky = skyline();
-		if (!sky.equals(skyline)) {
-			skyline = sky;
-			System.out.println(skyline);
-		}*/
+		if (rec.getDimension() != getDimension()) { throw new IllegalArgumentException("Rectangle dimension different than RTree dimension."); }
+		QueryStats stats = beginStats("insert");
+		try { return add(plain(rec)); }
+		finally { endStats(stats); }
+	}
+	
+	// Insert and return the id of the new entry, which stays the same till the entry is deleted. The tree keeps the leaf
+	// of every id, so delete(id), contains(id) and update(id, rec) go straight to it. The data found by queries are
+	// new rectangles with the id, see Rectangle.getId
+	public long insertWithId(Rectangle rec) {
+		if (rec == null) { throw new IllegalArgumentException("Rectangle cannot be null."); }
+		if (rec.getDimension() != getDimension()) { throw new IllegalArgumentException("Rectangle dimension different than RTree dimension."); }
+		if (leaves == null) { leaves = new LongMap<>(); }
+		Rectangle entry = rec.withId(nextId ++);
+		QueryStats stats = beginStats("insert");
+		try {
+			add(entry);
+			return entry.getId();
+		} finally { endStats(stats); }
+	}
+	
+	private boolean add(Rectangle rec) {
+		beginUpdate();
+		boolean res = insertData(rec);
+		if (skyline != null) { skylineInsert(rec); }
+		endUpdate();
 		return res;
 	}
 	
+	static Rectangle plain(Rectangle rec) { return rec.getId() == 0 ? rec : rec.withId(0); } // The ids of other trees mean nothing here
+	
+	protected void placed(long id, RTDataNode leaf) { leaves.put(id, leaf); } // Called for the data with an id
+	
+	protected void removed(long id) { // The data left the tree
+		if (id != 0) { leaves.remove(id); }
+	}
+	
+	public boolean contains(long id) { return leaves != null && leaves.get(id) != null; }
+	
+	public Rectangle get(long id) { // The entry with the id, null if there is none
+		RTDataNode leaf = leaves == null ? null : leaves.get(id);
+		return leaf == null ? null : leaf.getData(leaf.indexOf(id));
+	}
+	
+	public boolean delete(long id) { // Delete the entry from its leaf and condense the tree from there up
+		RTDataNode leaf = leaves == null ? null : leaves.get(id);
+		if (leaf == null) { return false; }
+		QueryStats stats = beginStats("delete");
+		try {
+			beginUpdate();
+			leaf = (RTDataNode) writable(leaf);
+			int i = leaf.indexOf(id);
+			Rectangle rec = skyline == null ? null : leaf.getData(i);
+			leaf.delete(i);
+			if (skyline != null) { skylineDelete(rec); }
+			endUpdate();
+			if (stats != null) { stats.results = 1; }
+			return true;
+		} finally { endStats(stats); }
+	}
+	
+	// Move the entry with the id to the rectangle, bottom-up from its leaf. The entry stays in the leaf if the rectangle
+	// is inside the leaf's entry in the parent grown by the update slack, else it moves to a sibling under the same parent
+	// that has room and takes it the same way, and only then is it deleted and inserted again from the root. A Hilbert
+	// tree keeps it in the leaf only if its place in Hilbert order doesn't change. Returns false if there is no such id
+	public boolean update(long id, Rectangle rec) {
+		if (rec == null) { throw new IllegalArgumentException("Rectangle cannot be null."); }
+		if (rec.getDimension() != getDimension()) { throw new IllegalArgumentException("Rectangle dimension different than RTree dimension."); }
+		RTDataNode leaf = leaves == null ? null : leaves.get(id);
+		if (leaf == null) { return false; }
+		QueryStats stats = beginStats("update");
+		try {
+			beginUpdate();
+			leaf = (RTDataNode) writable(leaf);
+			int i = leaf.indexOf(id);
+			Rectangle old = skyline == null ? null : leaf.getData(i);
+			Rectangle entry = rec.withId(id);
+			if (!updateInLeaf(leaf, i, entry) && !updateInSibling(leaf, i, entry)) {
+				leaf.delete(i);
+				insertData(entry);
+			}
+			if (skyline != null) { // As a deletion and an insertion, a point equal to a skyline point is not added twice
+				skylineDelete(old);
+				skylineInsert(entry);
+			}
+			endUpdate();
+			if (stats != null) { stats.results = 1; }
+			return true;
+		} finally { endStats(stats); }
+	}
+	
+	private boolean updateInLeaf(RTDataNode leaf, int i, Rectangle entry) {
+		RTDirNode parent = (RTDirNode) leaf.parent;
+		if (treeType == Constants.HILBERT) {
+			long h = hilbertCurve.index(entry);
+			long lo = leaf.hilberts[i == 0 ? 0 : i - 1]; // Between the neighbors, an end entry no further out than it was so the leaves stay in order
+			long hi = leaf.hilberts[i == leaf.usedSpace - 1 ? i : i + 1];
+			if (h < lo || h > hi || (parent != null && !fits(parent, parent.indexOf(leaf), entry))) { return false; }
+			leaf.replaceData(i, entry);
+			leaf.adjustHilbert();
+			return true;
+		}
+		if (parent == null) {
+			leaf.replaceData(i, entry);
+			return true;
+		}
+		if (!fits(parent, parent.indexOf(leaf), entry)) { return false; }
+		leaf.replaceData(i, entry);
+		parent.adjustTree(leaf, null);
+		return true;
+	}
+	
+	private boolean updateInSibling(RTDataNode leaf, int i, Rectangle entry) { // Only if the leaf keeps enough entries
+		RTDirNode parent = (RTDirNode) leaf.parent;
+		int min = (int) Math.round(capacity * fillFactor);
+		if (treeType == Constants.HILBERT || parent == null || leaf.usedSpace <= min) { return false; }
+		int index = parent.indexOf(leaf), best = -1;
+		double bestEnlargement = Double.POSITIVE_INFINITY, bestArea = Double.POSITIVE_INFINITY;
+		for (int j = 0; j < parent.usedSpace; j ++) {
+			if (j == index || !fits(parent, j, entry)) { continue; }
+			double enlargement = parent.enlargement(j, entry);
+			double area = parent.entryArea(j);
+			if (enlargement < bestEnlargement || (enlargement == bestEnlargement && area < bestArea)) {
+				RTNode sibling = parent.getChild(j);
+				if (sibling.usedSpace >= capacity) { continue; }
+				best = j;
+				bestEnlargement = enlargement;
+				bestArea = area;
+			}
+		}
+		if (best < 0) { return false; }
+		RTDataNode sibling = (RTDataNode) writable(parent.getChild(best));
+		leaf.deleteData(i);
+		sibling.addData(entry);
+		parent.setEntry(index, leaf);
+		parent.adjustTree(sibling, null);
+		return true;
+	}
+	
+	private boolean fits(RTNode node, int i, Rectangle rec) { // Judge if the rectangle is inside entry i grown by the update slack
+		int off = i * dimension;
+		double[] low = rec.lows(), high = rec.highs();
+		for (int d = 0; d < dimension; d ++) {
+			double grow = (node.highs[off + d] - node.lows[off + d]) * updateSlack;
+			if (low[d] < node.lows[off + d] - grow || high[d] > node.highs[off + d] + grow) { return false; }
+		}
+		return true;
+	}
+	
+	protected boolean insertData(Rectangle rec) { return insertData(rec.lows(), rec.highs(), 0, rec.getId()); } // Insert without touching the skyline
+	
+	protected boolean insertData(double[] low, double[] high, int off, long id) { // Same with the data in flat arrays, also used to relocate data on deletion
+		reinsertedLevels = 0;
+		RTDataNode leaf = (RTDataNode) writable(root.chooseLeaf(low, high, off));
+		return leaf.insert(low, high, off, id);
+	}
+	
+	protected boolean markReinsert(int level) { // Returns true for the first overflow on the level during this insertion
+		if ((reinsertedLevels & (1L << level)) != 0) { return false; }
+		reinsertedLevels |= 1L << level;
+		return true;
+	}
+	
+	protected void reinsert(double[] low, double[] high, int off, long id) { // Insert again as part of the current insertion
+		QueryStats stats = stats();
+		if (stats != null) { stats.reinserts ++; }
+		((RTDataNode) writable(root.chooseLeaf(low, high, off))).insert(low, high, off, id);
+	}
+	
+	protected void reinsert(RTNode node) { // Insert a subtree again on its own level
+		QueryStats stats = stats();
+		if (stats != null) { stats.reinserts ++; }
+		double[] low = buffers.coverLow, high = buffers.coverHigh; // Only read on the way down, before anything is inserted
+		node.cover(low, high, 0);
+		RTDirNode target = ((RTDirNode) root).chooseNode(low, high, 0, node.level + 1);
+		((RTDirNode) writable(target)).insert(node);
+	}
+	
 	public List<Rectangle> search(Rectangle rec) {
 		if (rec == null) { throw new IllegalArgumentException("Rectangle cannot be null."); }
-		if (rec.getLow().getDimension() != getDimension()) { throw new IllegalArgumentException("Rectangle dimension different than RTree dimension."); }
-		List<Rectangle> res = root.searchLeaf(rec);
+		if (rec.getDimension() != getDimension()) { throw new IllegalArgumentException("Rectangle dimension different than RTree dimension."); }
+		QueryStats stats = beginStats("search");
+		List<Rectangle> res = new ArrayList<>();
+		try {
+			root.searchLeaf(rec, res); // One list filled by all the leaves
+			if (stats != null) { stats.results = res.size(); }
+		} finally { endStats(stats); }
 		
 		// Another method for searching
-		/*List<RTNode> nodes = traversePost(root);
+		/*List<Rectangle> points = getPoints(root);
 		List<Rectangle> res = new ArrayList<>();
-		for (int i = 0; i < nodes.size(); i ++) {
-			for (int j = 0; j < nodes.get(i).datas.length; j ++) {
-				if (nodes.get(i).datas[j] != null && rec.enclosure(nodes.get(i).datas[j])) {
-					res.add(nodes.get(i).datas[j]);
-				}
+		for (int i = 0; i < points.size(); i ++) {
+			if (rec.enclosure(points.get(i))) {
+				res.add(points.get(i));
 			}
 		}*/
 		return res;
 	}
 	
+	public SearchIterator searchIterator(Rectangle rec) { return new SearchIterator(this, rec); } // Lazy search, results in tree order
+	
+	public Stream<Rectangle> searchStream(Rectangle rec) { // Lazy search, limit or findFirst stop the traversal early
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(searchIterator(rec), Spliterator.ORDERED | Spliterator.NONNULL), false);
+	}
+	
 	public int delete(Rectangle rec) {
 		if (rec == null) { throw new IllegalArgumentException("Rectangle cannot be null."); }
-		if (rec.getHigh().getDimension() != getDimension()) { throw new IllegalArgumentException("Rectangle dimension different than RTree dimension."); }
-		RTDataNode leaf = root.findLeaf(rec);
-		int res = -1;
-		if (leaf != null) { res = leaf.delete(rec); }
-		
-		// Uncomment this to update skyline for each insertion (program will be slowed when doing a massive deletion)
-		/*List<Rectangle> sky = skyline();
-		if (!sky.equals(skyline)) {
-			skyline = sky;
-			System.out.println(skyline);
-		}*/
+		if (rec.getDimension() != getDimension()) { throw new IllegalArgumentException("Rectangle dimension different than RTree dimension."); }
+		QueryStats stats = beginStats("delete");
+		try {
+			beginUpdate();
+			RTDataNode leaf = root.findLeaf(rec);
+			int res = -1;
+			if (leaf != null) { res = ((RTDataNode) writable(leaf)).delete(rec); }
+			if (res >= 0 && skyline != null) { skylineDelete(rec); }
+			endUpdate();
+			if (stats != null && res >= 0) { stats.results = 1; }
+			return res;
+		} finally { endStats(stats); }
+	}
+	
+	// Insert a batch, the rectangles are split among the subtrees from the root down so that each leaf is reached once for
+	// all the rectangles going there and its path is adjusted once. What doesn't fit in the leaf is inserted one at a time
+	public void insertAll(List<Rectangle> recs) {
+		if (recs == null) { throw new IllegalArgumentException("Rectangle list cannot be null."); }
+		for (int i = 0; i < recs.size(); i ++) {
+			Rectangle rec = recs.get(i);
+			if (rec == null) { throw new IllegalArgumentException("Rectangle cannot be null."); }
+			if (rec.getDimension() != getDimension()) { throw new IllegalArgumentException("Rectangle dimension different than RTree dimension."); }
+		}
+		QueryStats stats = beginStats("insertAll");
+		try {
+			if (root.isLeaf() && root.usedSpace == 0) { // Nothing to merge with, pack the batch instead
+				bulkLoad(recs);
+				return;
+			}
+			List<Rectangle> plain = recs;
+			for (int i = 0; i < recs.size(); i ++) {
+				if (recs.get(i).getId() == 0) { continue; }
+				plain = new ArrayList<>(recs.size()); // Only when some data come with an id
+				for (int j = 0; j < recs.size(); j ++) {
+					plain.add(plain(recs.get(j)));
+				}
+				break;
+			}
+			beginUpdate();
+			insertGroup(root, plain);
+			if (skyline != null) {
+				for (int i = 0; i < plain.size(); i ++) {
+					skylineInsert(plain.get(i));
+				}
+			}
+			endUpdate();
+		} finally { endStats(stats); }
+	}
+	
+	private void insertGroup(RTNode node, List<Rectangle> group) {
+		if (!isAttached(node)) { // Split away by an earlier group
+			for (int i = 0; i < group.size(); i ++) {
+				insertData(group.get(i));
+			}
+			return;
+		}
+		if (node.isLeaf()) {
+			fillLeaf((RTDataNode) node, group);
+			return;
+		}
+		RTDirNode dir = (RTDirNode) node;
+		RTNode[] children = new RTNode[dir.usedSpace];
+		List<List<Rectangle>> groups = new ArrayList<>();
+		for (int i = 0; i < dir.usedSpace; i ++) {
+			children[i] = dir.getChild(i);
+			groups.add(new ArrayList<Rectangle>());
+		}
+		for (int i = 0; i < group.size(); i ++) {
+			groups.get(dir.chooseSubtree(group.get(i))).add(group.get(i));
+		}
+		for (int i = 0; i < children.length; i ++) {
+			if (!groups.get(i).isEmpty()) { insertGroup(children[i], groups.get(i)); }
+		}
+	}
+	
+	private void fillLeaf(RTDataNode leaf, List<Rectangle> group) {
+		leaf = (RTDataNode) writable(leaf);
+		int k = 0;
+		if (treeType == Constants.HILBERT) { // Entries must stay in Hilbert order, inserted one by one without the descent
+			while (k < group.size() && leaf.usedSpace < capacity) {
+				leaf.insert(group.get(k ++));
+			}
+		} else {
+			while (k < group.size() && leaf.usedSpace < capacity) {
+				leaf.addData(group.get(k ++));
+			}
+			if (!leaf.isRoot()) { ((RTDirNode) leaf.getParent()).adjustTree(leaf, null); }
+		}
+		while (k < group.size()) { // Overflow, the usual insertion splits the leaf
+			insertData(group.get(k ++));
+		}
+	}
+	
+	protected boolean isAttached(RTNode node) { return node == root || pathTo(node) != null; } // Judge if the node is still in the tree
+	
+	// Delete a batch, the data are taken out of their leaves first and the underfull nodes are removed afterwards
+	// in one pass from the leaves up, their data are then inserted again as a batch. Returns the number of data deleted
+	public int deleteAll(List<Rectangle> recs) {
+		if (recs == null) { throw new IllegalArgumentException("Rectangle list cannot be null."); }
+		QueryStats stats = beginStats("deleteAll");
+		try {
+			beginUpdate();
+			List<Rectangle> deleted = new ArrayList<>();
+			List<Set<RTNode>> touched = new ArrayList<>(); // Changed nodes on each level
+			for (int i = 0; i < recs.size(); i ++) {
+				Rectangle rec = recs.get(i);
+				if (rec == null) { throw new IllegalArgumentException("Rectangle cannot be null."); }
+				if (rec.getDimension() != getDimension()) { throw new IllegalArgumentException("Rectangle dimension different than RTree dimension."); }
+				RTDataNode leaf = root.findLeaf(rec); // Rectangles of the index entries only got too large so far, still found
+				if (leaf == null) { continue; }
+				leaf = (RTDataNode) writable(leaf);
+				for (int j = 0; j < leaf.usedSpace; j ++) {
+					if (leaf.matches(j, rec)) {
+						removed(leaf.ids[j]);
+						leaf.deleteData(j);
+						break;
+					}
+				}
+				deleted.add(rec);
+				touch(touched, leaf);
+			}
+			
+			List<Rectangle> orphans = new ArrayList<>(); // Data of the removed nodes
+			int min = (int) Math.round(capacity * fillFactor);
+			for (int level = 0; level < touched.size(); level ++) {
+				for (RTNode node : touched.get(level)) {
+					if (node.isRoot()) { continue; }
+					RTDirNode parent = (RTDirNode) node.parent;
+					if (node.usedSpace < min || node.usedSpace == 0) {
+						parent.deleteData(parent.indexOf(node));
+						node.parent = null;
+						orphans.addAll(getPoints(node));
+					} else { parent.setEntry(parent.indexOf(node), node); }
+					touch(touched, parent);
+				}
+			}
+			while (!root.isLeaf() && root.usedSpace <= 1) { // Shrink the root
+				root = root.usedSpace == 1 ? detached(((RTDirNode) root).getChild(0)) : new RTDataNode(this, Constants.NULL);
+			}
+			if (!orphans.isEmpty()) { insertGroup(root, orphans); }
+			if (skyline != null) {
+				for (int i = 0; i < deleted.size(); i ++) {
+					skylineDelete(deleted.get(i));
+				}
+			}
+			endUpdate();
+			if (stats != null) { stats.results = deleted.size(); }
+			return deleted.size();
+		} finally { endStats(stats); }
+	}
+	
+	private void touch(List<Set<RTNode>> touched, RTNode node) {
+		while (touched.size() <= node.level) {
+			touched.add(Collections.newSetFromMap(new IdentityHashMap<RTNode, Boolean>()));
+		}
+		touched.get(node.level).add(node);
+	}
+	
+	public void enableSnapshots() { // Switch to copy-on-write, before the tree is shared with other threads. Updates must come from one thread
+		copyOnWrite = true;
+		epoch ++;
+		published = root;
+	}
+	
+	public TreeSnapshot snapshot() { // The tree after the last finished update, never changes and needs no locking
+		if (!copyOnWrite) { throw new IllegalStateException("Snapshots are not enabled."); }
+		return new TreeSnapshot(this, published);
+	}
+	
+	protected void beginUpdate() {
+		if (copyOnWrite) { epoch ++; } // Every node of the published tree is older now
+	}
+	
+	protected void endUpdate() {
+		if (copyOnWrite) { published = root; }
+	}
+	
+	// Get the node ready to be changed, in copy-on-write mode a node older than the update is copied, and so is its path
+	// to the root, each copy taking the place of the old node in the parent's copy. The old nodes are left as they are for
+	// the snapshots, and so are the children a copy shares with them: those keep the old node as their parent, so the
+	// path of an older node is looked up from the root
+	protected RTNode writable(RTNode node) {
+		if (node.epoch == epoch) { return node; }
+		List<RTDirNode> path = pathTo(node);
+		if (path == null) { throw new IllegalStateException("Node is not in the tree."); }
+		RTDirNode parent = null;
+		for (int k = 0; k < path.size(); k ++) {
+			parent = (RTDirNode) writable(parent, path.get(k));
+		}
+		return writable(parent, node);
+	}
+	
+	private RTNode writable(RTDirNode parent, RTNode node) { // The node under the writable parent, null for the root
+		if (node.epoch == epoch) { return node; }
+		RTNode copy = node.copy();
+		if (parent == null) { root = copy; }
+		else { parent.children.set(parent.indexOf(node), copy); }
+		copy.parent = parent;
+		return copy;
+	}
+	
+	// The nodes from the root down to the parent of the node, null if the node is not in the tree. A node of the current
+	// update has the right parent, an older one is searched for in the entries that enclose its rectangle
+	protected List<RTDirNode> pathTo(RTNode node) {
+		List<RTDirNode> path = new ArrayList<>();
+		if (node == root) { return path; }
+		if (node.epoch == epoch) {
+			while (!node.isRoot()) {
+				RTDirNode parent = (RTDirNode) node.parent;
+				if (parent.children.indexOf(node) < 0) { return null; }
+				path.add(parent);
+				node = parent;
+			}
+			Collections.reverse(path);
+			return node == root ? path : null;
+		}
+		if (node.level >= root.level) { return null; }
+		double[] low = new double[dimension], high = new double[dimension];
+		node.cover(low, high, 0);
+		return findPath((RTDirNode) root, node, low, high, path) ? path : null;
+	}
+	
+	private boolean findPath(RTDirNode dir, RTNode node, double[] low, double[] high, List<RTDirNode> path) {
+		path.add(dir);
+		for (int i = 0; i < dir.usedSpace; i ++) {
+			if (!Geometry.contains(dir.lows, dir.highs, i * dimension, low, high, 0, dimension)) { continue; }
+			RTNode child = dir.children.get(i);
+			if (child == node) { return true; }
+			if (child.level > node.level && findPath((RTDirNode) child, node, low, high, path)) { return true; }
+		}
+		path.remove(path.size() - 1);
+		return false;
+	}
+	
+	protected RTNode detached(RTNode node) { // The node as a root, copied if it is older than the update
+		if (node.epoch != epoch) { node = node.copy(); }
+		node.parent = null;
+		return node;
+	}
+	
+	protected RTNode packed(RTNode node) { return node; } // A node done by a bulk loader, returns what its parent holds, see PagedRTree
+	
+	protected RTNode fetch(RTDirNode parent, int index) { return parent.children.get(index); } // Child of a node that has a page, read by paged trees
+	
+	public List<Rectangle> getSkyline() { // The live skyline, kept up to date by insert and delete after the first call
+		QueryStats stats = beginStats("getSkyline");
+		try {
+			if (skyline == null) {
+				skyline = new SkylineIndex(dimension);
+				bbs(skyline, null, null);
+			}
+			return liveSkyline();
+		} finally { endStats(stats); }
+	}
+	
+	protected List<Rectangle> liveSkyline() { // The live skyline without building it, null if it isn't kept
+		SkylineIndex sky = skyline;
+		if (sky == null) { return null; }
+		List<Rectangle> res = sky.toList();
+		sortSkyline(res);
 		return res;
 	}
 	
+	private void skylineInsert(Rectangle rec) { // The new point either is dominated or joins the skyline and evicts what it dominates
+		if (skyline.isDominated(rec)) { return; }
+		skyline.removeDominated(rec);
+		skyline.add(rec);
+	}
+	
+	private void skylineDelete(Rectangle rec) { // Only the points dominated by the removed skyline point can join the skyline
+		if (!skyline.remove(rec)) { return; } // Not a skyline point, nothing changes
+		bbs(skyline, null, rec.lows());
+	}
+	
+	// The k nearest data to q, best first with the heap keyed by mindist. Entries farther than the bound on the k-th distance
+	// are dropped, the bound being the k-th least distance of the data seen, or the least minmaxdist when k is 1
+	public List<Rectangle> nearest(Point q, int k) {
+		if (q == null) { throw new IllegalArgumentException("Point cannot be null."); }
+		if (q.getDimension() != getDimension()) { throw new IllegalArgumentException("Point dimension different than RTree dimension."); }
+		if (k < 1) { throw new IllegalArgumentException("k should be positive."); }
+		double[] p = q.getData();
+		QueryStats stats = beginStats("nearest");
+		try {
+			List<Rectangle> res = new ArrayList<>();
+			PriorityQueue<NodeEntry> heap = new PriorityQueue<>();
+			PriorityQueue<Double> found = new PriorityQueue<>(k + 1, Collections.reverseOrder()); // The k least distances seen
+			double bound = pushNearest(heap, root, p, k, found, Double.POSITIVE_INFINITY);
+			
+			while (!heap.isEmpty() && res.size() < k) {
+				NodeEntry e = heap.poll();
+				if (e.key > bound) { break; } // So is everything left
+				if (e.isData()) { res.add(e.getData()); }
+				else { bound = pushNearest(heap, e.getChild(), p, k, found, bound); }
+			}
+			if (stats != null) { stats.results = res.size(); }
+			return res;
+		} finally { endStats(stats); }
+	}
+	
+	private double pushNearest(PriorityQueue<NodeEntry> heap, RTNode node, double[] q, int k, PriorityQueue<Double> found, double bound) {
+		QueryStats stats = stats();
+		if (stats != null) { stats.visit(node, heap.size()); }
+		for (int i = 0; i < node.usedSpace; i ++) {
+			int off = i * dimension;
+			double dist = Geometry.mindist(q, node.lows, node.highs, off, dimension);
+			if (dist > bound) { continue; }
+			heap.add(new NodeEntry(node, i, dist));
+			if (node.isLeaf()) {
+				found.add(dist);
+				if (found.size() > k) { found.poll(); }
+				if (found.size() == k) { bound = Math.min(bound, found.peek()); }
+			} else if (k == 1) { bound = Math.min(bound, Geometry.minmaxdist(q, node.lows, node.highs, off, dimension)); }
+		}
+		if (stats != null) { stats.pushed(heap.size(), 0); }
+		return bound;
+	}
+	
+	public DistanceBrowser distanceBrowse(Point q) { return new DistanceBrowser(this, q); } // Data in increasing distance to q
+	
 	public List<Rectangle> skyline() { // Compute the skyline of the current tree with BBS
+		QueryStats stats = beginStats("skyline");
+		try {
+			List<Rectangle> res = new ArrayList<>();
+			bbs(new SkylineIndex(dimension), res, null);
+			sortSkyline(res);
+			if (stats != null) { stats.results = res.size(); }
+			return res;
+		} finally { endStats(stats); }
+	}
+	
+	public List<Rectangle> skyline(Rectangle constraint) { // Skyline of the points inside the constraint, BBS only goes into the entries intersecting it
+		if (constraint == null) { throw new IllegalArgumentException("Rectangle cannot be null."); }
+		if (constraint.getDimension() != getDimension()) { throw new IllegalArgumentException("Rectangle dimension different than RTree dimension."); }
 		List<Rectangle> res = new ArrayList<>();
-		PriorityQueue<Rectangle> heap = new PriorityQueue<>();
-		HashMap<Rectangle, RTNode> record = new HashMap<>(); // Indices of node and corresponding rectangle
-		if (root instanceof RTDataNode) { // Only one node in the tree
-			for (int i = 0; i < root.usedSpace; i ++) {
-				if (isDominate(res, root.datas[i])) { heap.add(root.datas[i]); }
-				else { res.add(root.datas[i]); }
+		SkylineIndex sky = new SkylineIndex(dimension);
+		QueryStats stats = beginStats("constrainedSkyline");
+		try {
+			double[] low = constraint.lows(), high = constraint.highs();
+			double[] corner = new double[dimension]; // Low corner of the part of an entry inside the constraint
+			PriorityQueue<NodeEntry> heap = new PriorityQueue<>();
+			pushEntries(heap, root, sky, low, high, corner);
+			
+			while (!heap.isEmpty()) {
+				NodeEntry e = heap.poll();
+				if (stats != null) { stats.dominanceChecks ++; }
+				clip(e.node.lows, e.getOffset(), low, corner);
+				if (sky.isDominated(corner, 0)) { continue; }
+				if (e.isData()) {
+					if (Geometry.contains(low, high, 0, e.node.lows, e.node.highs, e.getOffset(), dimension)) {
+						sky.add(e.getData());
+						res.add(e.getData());
+					}
+				}
+				else { pushEntries(heap, e.getChild(), sky, low, high, corner); }
 			}
+			sortSkyline(res);
+			if (stats != null) { stats.results = res.size(); }
 			return res;
+		} finally { endStats(stats); }
+	}
+	
+	// Push the entries intersecting the constraint whose part inside it isn't dominated, keyed by the mindist of that part
+	private void pushEntries(PriorityQueue<NodeEntry> heap, RTNode node, SkylineIndex sky, double[] low, double[] high, double[] corner) {
+		QueryStats stats = stats();
+		if (stats != null) { stats.visit(node, heap.size()); }
+		int checks = 0;
+		for (int i = 0; i < node.usedSpace; i ++) {
+			int off = i * dimension;
+			if (!Geometry.intersects(low, high, 0, node.lows, node.highs, off, dimension)) { continue; }
+			clip(node.lows, off, low, corner);
+			checks ++;
+			if (!sky.isDominated(corner, 0)) { heap.add(new NodeEntry(node, i, Geometry.mindist(corner, 0, dimension))); }
 		}
-		RTDirNode r = (RTDirNode) root;
-		for (int i = 0; i < r.usedSpace; i ++) { // Include all data from root in the heap
-			heap.add(r.datas[i]);
-			record.put(r.datas[i], r.getChild(i));
+		if (stats != null) { stats.pushed(heap.size(), checks); }
+	}
+	
+	private void clip(double[] lows, int off, double[] low, double[] corner) {
+		for (int d = 0; d < dimension; d ++) {
+			corner[d] = Math.max(lows[off + d], low[d]);
 		}
-		
+	}
+	
+	public List<Rectangle> kSkyband(int k) { // Points dominated by less than k others, BBS pruning the entries dominated by k points found
+		if (k < 1) { throw new IllegalArgumentException("k should be positive."); }
+		QueryStats stats = beginStats("kSkyband");
+		try {
+			List<Rectangle> res = new ArrayList<>();
+			SkylineIndex band = new SkylineIndex(dimension);
+			PriorityQueue<NodeEntry> heap = new PriorityQueue<>();
+			pushBand(heap, root, band, k);
+			
+			while (!heap.isEmpty()) {
+				NodeEntry e = heap.poll();
+				if (stats != null) { stats.dominanceChecks ++; }
+				if (band.countDominating(e.node.lows, e.getOffset(), k) >= k) { continue; }
+				if (e.isData()) {
+					band.add(e.getData());
+					res.add(e.getData());
+				}
+				else { pushBand(heap, e.getChild(), band, k); }
+			}
+			sortSkyline(res);
+			if (stats != null) { stats.results = res.size(); }
+			return res;
+		} finally { endStats(stats); }
+	}
+	
+	private void pushBand(PriorityQueue<NodeEntry> heap, RTNode node, SkylineIndex band, int k) {
+		QueryStats stats = stats();
+		if (stats != null) { stats.visit(node, heap.size()); }
+		for (int i = 0; i < node.usedSpace; i ++) {
+			int off = i * dimension;
+			if (band.countDominating(node.lows, off, k) < k) { heap.add(new NodeEntry(node, i, Geometry.mindist(node.lows, off, dimension))); }
+		}
+		if (stats != null) { stats.pushed(heap.size(), node.usedSpace); }
+	}
+	
+	// The k points that dominate the most others, best first over the entries by the number of points their low corner dominates,
+	// which bounds the score of every point inside. The counts kept in the index entries (aR-tree) let a subtree that is
+	// dominated as a whole be counted without going down to its leaves
+	public List<Rectangle> topKDominating(int k) {
+		if (k < 1) { throw new IllegalArgumentException("k should be positive."); }
+		QueryStats stats = beginStats("topKDominating");
+		try {
+			List<Rectangle> res = new ArrayList<>();
+			PriorityQueue<NodeEntry> heap = new PriorityQueue<>(); // Keyed by the negative score
+			pushDominating(heap, root);
+			
+			while (!heap.isEmpty() && res.size() < k) {
+				NodeEntry e = heap.poll();
+				if (e.isData()) { res.add(e.getData()); } // Exact score, no entry left can beat it
+				else { pushDominating(heap, e.getChild()); }
+			}
+			if (stats != null) { stats.results = res.size(); }
+			return res;
+		} finally { endStats(stats); }
+	}
+	
+	private void pushDominating(PriorityQueue<NodeEntry> heap, RTNode node) {
+		QueryStats stats = stats();
+		if (stats != null) { stats.visit(node, heap.size()); }
+		for (int i = 0; i < node.usedSpace; i ++) { // The score of a point, a bound for an index entry without the point it is for
+			int score = node.isLeaf() ? countDominated(root, node.lows, i * dimension, true) : countDominated(root, node.lows, i * dimension, false) - 1;
+			heap.add(new NodeEntry(node, i, -score));
+		}
+		if (stats != null) { stats.pushed(heap.size(), 0); }
+	}
+	
+	// Number of points under the node that p dominates. If strict, a point equal to p doesn't count, as with the skyline,
+	// otherwise p bounds the box of an index entry and every point no smaller than it on all dimensions counts
+	private int countDominated(RTNode node, double[] p, int pOff, boolean strict) {
+		QueryStats stats = stats();
+		if (stats != null) { stats.dominanceChecks += node.usedSpace; }
+		int count = 0;
+		for (int i = 0; i < node.usedSpace; i ++) {
+			int off = i * dimension;
+			if (!Geometry.dominates(p, pOff, node.highs, off, dimension)) { continue; } // Nothing inside is dominated
+			boolean equal = strict && Geometry.equals(p, p, pOff, node.lows, node.lows, off, dimension);
+			if (node.isLeaf()) {
+				if (!equal && Geometry.dominates(p, pOff, node.lows, off, dimension)) { count ++; }
+			} else if (!equal && Geometry.dominates(p, pOff, node.lows, off, dimension)) { count += node.counts[i]; } // Everything inside is dominated
+			else { count += countDominated(((RTDirNode) node).getChild(i), p, pOff, strict); }
+		}
+		return count;
+	}
+	
+	public List<Rectangle> parallelSkyline() { return new ParallelSkyline(this, ForkJoinPool.commonPool()).compute(); }
+	
+	public List<Rectangle> parallelSkyline(ForkJoinPool pool) { return new ParallelSkyline(this, pool).compute(); }
+	
+	// BBS adding the skyline points to sky and res, if region is not null only the points it dominates are looked for,
+	// the others being dominated by sky or in it already
+	private void bbs(SkylineIndex sky, List<Rectangle> res, double[] region) {
+		PriorityQueue<NodeEntry> heap = new PriorityQueue<>();
+		pushEntries(heap, root, sky, region); // Include all data from root in the heap
+		bbs(heap, sky, res, region);
+	}
+	
+	protected void bbs(RTNode node, int i, SkylineIndex sky, List<Rectangle> res) { // Local skyline of the subtree at entry i of the node
+		PriorityQueue<NodeEntry> heap = new PriorityQueue<>();
+		heap.add(new NodeEntry(node, i, Geometry.mindist(node.lows, i * dimension, dimension)));
+		bbs(heap, sky, res, null);
+	}
+	
+	private void bbs(PriorityQueue<NodeEntry> heap, SkylineIndex sky, List<Rectangle> res, double[] region) {
+		QueryStats stats = stats();
 		while (!heap.isEmpty()) {
-			Rectangle rec = heap.poll();
-			if (!isDominate(res, rec)) { // Rectangle is not dominated by current skyline, continue
-				if (record.get(rec) != null) { // The corresponding node is an index node
-					RTNode r1 = record.get(rec);
-					for (int i = 0; i < r1.usedSpace; i ++) {
-						if (!isDominate(res, r1.datas[i])) { // The indices that haven't been dominated, might contain new skyline points
-							heap.add(r1.datas[i]);
-							if (r1 instanceof RTDirNode) {
-								RTDirNode r2 = (RTDirNode) r1;
-								record.put(r2.datas[i], r2.getChild(i));
-							} else { record.put(r1.datas[i], null); }
-						} 
-					}
-				} else { res.add(rec); } // Data node
+			NodeEntry e = heap.poll();
+			if (stats != null) { stats.dominanceChecks ++; }
+			if (!sky.isDominated(e.node.lows, e.getOffset())) { // Entry is not dominated by current skyline, continue
+				if (e.isData()) { // Data node
+					if (region != null && !Geometry.dominates(region, 0, e.node.lows, e.getOffset(), dimension)) { continue; }
+					sky.add(e.getData());
+					if (res != null) { res.add(e.getData()); }
+				}
+				else { pushEntries(heap, e.getChild(), sky, region); } // Index node, its entries might contain new skyline points
 			}
 		}
-		
+	}
+	
+	protected static void sortSkyline(List<Rectangle> res) {
 		Collections.sort(res, new Comparator<Rectangle>() { // Sort skyline points by their x-axis
             @Override
             public int compare(Rectangle r1, Rectangle r2) {
-            	if (r1.getLow().getCoordinate(0) > r2.getLow().getCoordinate(0)) { return 1; }
-            	else if (r1.getLow().getCoordinate(0) < r2.getLow().getCoordinate(0)) { return -1; }
+            	if (r1.lowCoordinate(0) > r2.lowCoordinate(0)) { return 1; }
+            	else if (r1.lowCoordinate(0) < r2.lowCoordinate(0)) { return -1; }
             	return 0;
             }
         });
-		return res;
+	}
+	
+	// Push the entries of the node that haven't been dominated and reach into the region dominated by the given point
+	private void pushEntries(PriorityQueue<NodeEntry> heap, RTNode node, SkylineIndex sky, double[] region) {
+		QueryStats stats = stats();
+		if (stats != null) { stats.visit(node, heap.size()); }
+		int checks = 0;
+		for (int i = 0; i < node.usedSpace; i ++) {
+			int off = i * dimension;
+			if (region != null && !Geometry.dominates(region, 0, node.highs, off, dimension)) { continue; }
+			checks ++;
+			if (!sky.isDominated(node.lows, off)) { heap.add(new NodeEntry(node, i, Geometry.mindist(node.lows, off, dimension))); }
+		}
+		if (stats != null) { stats.pushed(heap.size(), checks); }
 	}
 	
 	public boolean isDominate(List<Rectangle> list, Rectangle rec) { // Check if the rectangle is dominated by the given skyline points
 		for (int i = 0; i < list.size(); i ++) {
-			if (list.get(i).getLow().getCoordinate(0) <= rec.getLow().getCoordinate(0)) {
-				if (list.get(i).getLow().getCoordinate(1) <= rec.getLow().getCoordinate(1)) { return true; }
-			}
+			if (Geometry.dominates(list.get(i).lows(), 0, rec.lows(), 0, dimension)) { return true; }
 		}
 		return false;
 	}
@@ -162,7 +990,7 @@ public class RTree {
 			}
 		} else {
 			for (int i = 0; i < root.usedSpace; i ++) {
-				list.add(root.datas[i]);
+				list.add(((RTDataNode) root).getData(i));
 			}
 		}
 		return list;
@@ -171,36 +999,27 @@ public class RTree {
 	public static void main(String args[]) throws Exception {
 		//RTree tree = new RTree(4, 0.4f, Constants.RTREE_LINEAR, 2);
 		RTree tree = new RTree(4, 0.4f, Constants.RTREE_QUADRATIC, 2);
-		//RTree tree = new RTree(4, 0.4f, Constants.RTREE_EXPONENTIAL, 2);
+		//RTree tree = new RTree(4, 0.4f, Constants.RTREE_EXPONENTIAL, 2); // Slow to build but best for queries, for trees built once
 		//RTree tree = new RTree(4, 0.4f, Constants.RSTAR, 2);
+		//RTree tree = new RTree(4, 0.4f, Constants.HILBERT, 2);
+		// The tree could also be built at once from the list of points by RTree.bulkLoad
 		
 		// Test sample
 		/*double[] f = { 5, 30, 25, 35, 15, 38, 23, 50, 10, 23, 30, 28, 13, 10, 18, 15, 23, 10, 28, 20, 28, 30, 33, 40, 38,
 				13, 43, 30, 35, 37, 40, 43, 45, 8, 50, 50, 23, 55, 28, 70, 10, 65, 15, 70, 10, 58, 20, 63, };*/
 		
-		BufferedReader file = new BufferedReader(new FileReader("greek-earthquakes-1964-2000.txt"));
-		List<Double> f = new ArrayList<>();
-		String s;
-		while ((s = file.readLine()) != null) {
-			String[] tmp = s.split(" ");
-			for (int i = 0; i < tmp.length; i ++) {
-				f.add(Double.parseDouble(tmp[i])); // Get points from the given file
-			}
-		}
+		// Get points from the given file, parsed in batches straight into arrays of doubles.
+		// new PointLoader(path).load(tree) would insert them batch by batch without keeping the list
+		List<Rectangle> points = new PointLoader(Paths.get("greek-earthquakes-1964-2000.txt")).readAll();
 		
 		System.out.println("---------------------------------");
 		System.out.println("Begin insert.");
-		for (int i = 0; i < f.size();) {
-			Point p = new Point(new double[] {f.get(i ++), f.get(i ++)});
-			final Rectangle rec = new Rectangle(p);
-			tree.insert(rec);
+		for (int i = 0; i < points.size(); i ++) {
+			tree.insert(points.get(i));
 			
 			// Uncomment this to print the data of the node after each insertion
-			/*Rectangle[] recs = tree.root.datas;
-			System.out.println("level: " + tree.root.level);
-			for (int j = 0; j < recs.length; j ++) {
-				System.out.println(recs[j]);
-			}*/
+			/*System.out.println("level: " + tree.root.level);
+			System.out.println(tree.root);*/
 		}
 		System.out.println("---------------------------------");
 		System.out.println("Insert finished.");
@@ -222,35 +1041,24 @@ public class RTree {
 		
 		// Print skyline
 		System.out.println("Skyline of this tree");
-		tree.skyline = tree.skyline();
-		for (int j = 0; j < tree.skyline.size(); j ++) {
-			System.out.println(tree.skyline.get(j));
+		List<Rectangle> sky = tree.getSkyline();
+		for (int j = 0; j < sky.size(); j ++) {
+			System.out.println(sky.get(j));
 		}
 		
 		// Plotting all the points and connect skyline points through line
 		List<Rectangle> others = tree.getPoints(tree.root);
-		for (int i = 0; i < tree.skyline.size(); i ++) {
-			others.remove(tree.skyline.get(i));
+		for (int i = 0; i < sky.size(); i ++) {
+			others.remove(sky.get(i));
 		}
-		Chart chart = new Chart("Skyline", tree.skyline, others);
+		Chart chart = new Chart("Skyline", sky, others);
 		chart.pack();
         RefineryUtilities.centerFrameOnScreen(chart);
         chart.setVisible(true);
 		
 		System.out.println("---------------------------------");
 		System.out.println("Begin delete.");
-		for (int i = 0; i < f.size();) {
-			Point p = new Point(new double[] {f.get(i ++), f.get(i ++)});
-			final Rectangle rec = new Rectangle(p);
-			tree.delete(rec);
-			
-			// Uncomment this to print the data of the node after each deletion
-			/*Rectangle[] recs = tree.root.datas;
-			System.out.println("level: " + tree.root.level);
-			for (int j = 0; j < recs.length; j ++) {
-				System.out.println(recs[j]);
-			}*/
-		}
+		tree.deleteAll(points); // One condense pass instead of one per point, tree.delete(rec) removes a single point
 		System.out.println("---------------------------------");
 		System.out.println("Delete finished.");
 		
@@ -0,0 +1,36 @@
+// When a tree grown by updates is worth packing again, judged from its TreeQuality
+// A rebuild is due when the index entries overlap too much, the nodes are too empty, or the tree got higher than the
+// packed tree by more than the given number of levels. The tree is checked every checkInterval updates
+
+package rtree;
+
+public class RebuildPolicy {
+	private int checkInterval;
+	private double maxOverlapRatio;
+	private double minFill;
+	private int maxExtraLevels;
+	
+	public RebuildPolicy(int checkInterval, double maxOverlapRatio, double minFill, int maxExtraLevels) {
+		if (checkInterval < 1) { throw new IllegalArgumentException("Check interval should be positive."); }
+		if (maxOverlapRatio < 0) { throw new IllegalArgumentException("Overlap ratio cannot be negative."); }
+		if (minFill < 0 || minFill > 1) { throw new IllegalArgumentException("Fill should be between 0 and 1."); }
+		if (maxExtraLevels < 0) { throw new IllegalArgumentException("Extra levels cannot be negative."); }
+		this.checkInterval = checkInterval;
+		this.maxOverlapRatio = maxOverlapRatio;
+		this.minFill = minFill;
+		this.maxExtraLevels = maxExtraLevels;
+	}
+	
+	public int getCheckInterval() { return checkInterval; }
+	
+	public double getMaxOverlapRatio() { return maxOverlapRatio; }
+	
+	public double getMinFill() { return minFill; }
+	
+	public int getMaxExtraLevels() { return maxExtraLevels; }
+	
+	public boolean shouldRebuild(TreeQuality quality) {
+		if (quality.getDataCount() == 0) { return false; }
+		return quality.getOverlapRatio() > maxOverlapRatio || quality.getFill() < minFill || quality.getHeight() - quality.getPackedHeight() > maxExtraLevels;
+	}
+}
\ No newline at end of file
@@ -3,9 +3,12 @@
 
 package rtree;
 
+import java.util.Arrays;
+
 public class Rectangle implements Cloneable, Comparable<Rectangle> {
 	private Point low;
 	private Point high;
+	private long id; // Given by RTree.insertWithId, 0 for none
 	
 	public Rectangle(Point p1, Point p2) { // Create rectangle that covers an area
 		if (p1 == null || p2 == null) { throw new IllegalArgumentException("Points cannot be null."); }
@@ -23,45 +26,64 @@ public class Rectangle implements Cloneable, Comparable<Rectangle> {
 		high = (Point) p.clone();
 	}
 	
+	private Rectangle(Rectangle rec, long id) { // Same coordinates with another id, the points are never changed so they are shared
+		low = rec.low;
+		high = rec.high;
+		this.id = id;
+	}
+	
+	Rectangle(double[] lows, double[] highs, int off, int dimension, long id) { // Entry of a node, a point shares one Point for both corners
+		low = new Point(lows, off, dimension);
+		high = Arrays.equals(lows, off, off + dimension, highs, off, off + dimension) ? low : new Point(highs, off, dimension);
+		this.id = id;
+	}
+	
+	public long getId() { return id; }
+	
+	Rectangle withId(long id) { return new Rectangle(this, id); }
+	
 	public Point getLow() { return (Point) low.clone(); }
 	
 	public Point getHigh() { return (Point) high.clone(); }
 	
+	double lowCoordinate(int index) { return low.getCoordinate(index); } // Read a coordinate without cloning the point
+	
+	double highCoordinate(int index) { return high.getCoordinate(index); }
+	
 	public Rectangle getUnion(Rectangle rec) { // Get the minimum rectangle that contains both of the 2 targeted rectangles
 		if (rec == null) { throw new IllegalArgumentException("Rectangle cannot be null."); }
 		if (rec.getDimension() != getDimension()) { throw new IllegalArgumentException("Rectangle must be of same dimension."); }
 		double[] min = new double[getDimension()];
 		double[] max = new double[getDimension()];
 		for (int i = 0; i < getDimension(); i ++) {
-			min[i] = Math.min(low.getCoordinate(i), rec.low.getCoordinate(i));
-			max[i] = Math.max(high.getCoordinate(i), rec.high.getCoordinate(i));
+			min[i] = Math.min(lowCoordinate(i), rec.lowCoordinate(i));
+			max[i] = Math.max(highCoordinate(i), rec.highCoordinate(i));
 		}
 		return new Rectangle(new Point(min), new Point(max));
 	}
 	
-	public double getArea() {
-		double area = 1;
-		for (int i = 0; i < getDimension(); i ++) {
-			area *= high.getCoordinate(i) - low.getCoordinate(i);
-		}
-		return area;
+	public double getArea() { return Geometry.area(lows(), highs(), 0, getDimension()); }
+	
+	public double getEnlargement(Rectangle rec) { // Area that would be added to cover the targeted rectangle, without building the union
+		if (rec == null) { throw new IllegalArgumentException("Rectangle cannot be null."); }
+		if (rec.getDimension() != getDimension()) { throw new IllegalArgumentException("Rectangle must be of same dimension."); }
+		return Geometry.enlargement(lows(), highs(), 0, rec.lows(), rec.highs(), 0, getDimension());
 	}
 	
 	public static Rectangle getUnion(Rectangle[] rec) { // Get the minimum rectangle that contains all the targeted rectangles
 		if (rec == null || rec.length == 0) { throw new IllegalArgumentException("Rectangle array is empty."); }
-		Rectangle res = (Rectangle) rec[0].clone();
+		int dim = rec[0].getDimension();
+		double[] min = rec[0].lows().clone();
+		double[] max = rec[0].highs().clone();
 		for (int i = 1; i < rec.length; i ++) {
-			res = res.getUnion(rec[i]);
+			if (rec[i].getDimension() != dim) { throw new IllegalArgumentException("Rectangle must be of same dimension."); }
+			Geometry.include(min, max, 0, rec[i].lows(), rec[i].highs(), 0, dim);
 		}
-		return res;
+		return new Rectangle(new Point(min), new Point(max));
 	}
 	
 	@Override
-	protected Object clone() {
-		Point p1 = (Point) low.clone();
-		Point p2 = (Point) high.clone();
-		return new Rectangle(p1, p2);
-	}
+	protected Object clone() { return new Rectangle(low, high); } // The constructor copies the points
 	
 	@Override
 	public String toString() {
@@ -70,59 +92,49 @@ public class Rectangle implements Cloneable, Comparable<Rectangle> {
 	}
 	
 	public double intersectArea(Rectangle rec) { // Calculate the area of intersection with another rectangle
-		if (isIntersect(rec)) { return 0; }
-		double area = 1;
-		for (int i = 0; i < rec.getDimension(); i ++) { // Multiply the intersected edges of each dimension
-			double l1 = this.low.getCoordinate(i);
-			double h1 = this.high.getCoordinate(i);
-			double l2 = rec.low.getCoordinate(i);
-			double h2 = rec.high.getCoordinate(i);
-			
-			if (l1 <= l2 && h1 <= h2) { area *= (h1 - l1) - (l2 - l1); } // Left
-			else if (l1 >= l2 && h1 >= h2) { area *= (h2 - l2) - (l1 - l2); } // Right
-			else if (l1 >= l2 && h1 <= h2) { area *= h1 - l1; } // within
-			else if (l1 <= l2 && h1 >= h2) { area *= h2 - l2; } // enclosure
-		}
-		return area;
+		if (rec == null) { throw new IllegalArgumentException("Rectangle cannot be null."); }
+		if (rec.getDimension() != getDimension()) { throw new IllegalArgumentException("Rectangle must be of same dimension."); }
+		return Geometry.intersectArea(lows(), highs(), 0, rec.lows(), rec.highs(), 0, getDimension());
 	}
 	
 	public boolean isIntersect(Rectangle rec) { // Judge if it's intersect with the targeted rectangle
 		if (rec == null) { throw new IllegalArgumentException("Rectangle cannot be null."); }
 		if (rec.getDimension() != getDimension()) { throw new IllegalArgumentException("Rectangle must be of same dimension."); }
-		for (int i = 0; i < getDimension(); i ++) {
-			if (low.getCoordinate(i) > rec.high.getCoordinate(i) || high.getCoordinate(i) < rec.low.getCoordinate(i)) { return false; }
-		}
-		return true;
+		return Geometry.intersects(lows(), highs(), 0, rec.lows(), rec.highs(), 0, getDimension());
 	}
 	
-	private int getDimension() { return low.getDimension(); }
+	int getDimension() { return low.getDimension(); }
+	
+	double[] lows() { return low.getData(); } // Raw coordinates for the geometry kernel, must not be modified
+	
+	double[] highs() { return high.getData(); }
 	
 	public boolean enclosure(Rectangle rec) { // Judge if the targeted rectangle is inside it
 		if (rec == null) { throw new IllegalArgumentException("Rectangle cannot be null."); }
 		if (rec.getDimension() != getDimension()) { throw new IllegalArgumentException("Rectangle must be of same dimension."); }
-		for (int i = 0; i < getDimension(); i ++) {
-			if (rec.low.getCoordinate(i) < low.getCoordinate(i) || rec.high.getCoordinate(i) > high.getCoordinate(i)) { return false; }
-		}
-		return true;
+		return Geometry.contains(lows(), highs(), 0, rec.lows(), rec.highs(), 0, getDimension());
 	}
 	
 	@Override
 	public boolean equals(Object obj) {
 		if (obj instanceof Rectangle) {
 			Rectangle rec = (Rectangle) obj;
-			if (low.equals(rec.getLow()) && high.equals(rec.getHigh()) ) { return true; }
+			if (rec.getDimension() != getDimension()) { return false; }
+			return Geometry.equals(lows(), highs(), 0, rec.lows(), rec.highs(), 0, getDimension());
 		}
 		return false;
 	}
-
+	
+	@Override
+	public int hashCode() { return 31 * low.hashCode() + high.hashCode(); }
+	
 	@Override
 	public int compareTo(Rectangle arg0) { // Compare 2 rectangles by their mindists
 		if (arg0 instanceof Rectangle) {
 			Rectangle r = (Rectangle) arg0;
-			if (getLow().getDistance() > r.getLow().getDistance()) { return 1; }
-			else if (getLow().getDistance() < r.getLow().getDistance()) { return -1; }
-			else if (getHigh().getDistance() > r.getHigh().getDistance()) { return 1; }
-			else if (getHigh().getDistance() < r.getHigh().getDistance()) { return -1; }
+			int c = Double.compare(Geometry.mindist(lows(), 0, getDimension()), Geometry.mindist(r.lows(), 0, r.getDimension()));
+			if (c != 0) { return c; }
+			return Double.compare(Geometry.mindist(highs(), 0, getDimension()), Geometry.mindist(r.highs(), 0, r.getDimension()));
 		}
 		return 0;
 	}
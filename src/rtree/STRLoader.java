@@ -0,0 +1,41 @@
+// Sort-Tile-Recursive bulk loading
+// The entries of a level are sorted by the center on the first axis and cut into slabs, each slab is sorted
+// on the next axis and cut again, till the last axis where consecutive runs of capacity entries form a node
+
+package rtree;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+public class STRLoader extends BulkLoader {
+	public STRLoader(RTree rtree) { super(rtree); }
+	
+	@Override
+	protected int[] sort(double[] centers, int n, int level) {
+		Integer[] order = new Integer[n];
+		for (int i = 0; i < n; i ++) {
+			order[i] = i;
+		}
+		tile(order, centers, 0, n, 0);
+		int[] res = new int[n];
+		for (int i = 0; i < n; i ++) {
+			res[i] = order[i];
+		}
+		return res;
+	}
+	
+	private void tile(Integer[] order, final double[] centers, int from, int to, final int axis) { // Sort the range on the axis and cut it into slabs
+		Arrays.sort(order, from, to, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) { return Double.compare(centers[a * dimension + axis], centers[b * dimension + axis]); }
+		});
+		if (axis == dimension - 1) { return; }
+		int count = to - from;
+		int pages = (count + capacity - 1) / capacity; // Nodes needed for this range
+		int slabs = (int) Math.ceil(Math.pow(pages, 1.0 / (dimension - axis)));
+		int slabSize = ((pages + slabs - 1) / slabs) * capacity;
+		for (int i = from; i < to; i += slabSize) {
+			tile(order, centers, i, Math.min(i + slabSize, to), axis + 1);
+		}
+	}
+}
\ No newline at end of file
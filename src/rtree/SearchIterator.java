@@ -0,0 +1,59 @@
+// Window search that yields the data inside the rectangle one at a time
+// The path from the root is kept in an explicit stack of nodes and next entry positions, sized by the height of the tree,
+// so nothing is allocated per visited node. The tree must not change while iterating
+
+package rtree;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public class SearchIterator implements Iterator<Rectangle> {
+	private Rectangle rec;
+	private RTNode[] nodes; // Stack of the nodes on the current path
+	private int[] positions; // Next entry to visit in each of them
+	private int top;
+	private Rectangle next; // Found but not returned yet
+	
+	public SearchIterator(RTree rtree, Rectangle rec) {
+		if (rec == null) { throw new IllegalArgumentException("Rectangle cannot be null."); }
+		if (rec.getDimension() != rtree.getDimension()) { throw new IllegalArgumentException("Rectangle dimension different than RTree dimension."); }
+		this.rec = rec;
+		RTNode root = rtree.getRoot();
+		nodes = new RTNode[root.level + 1];
+		positions = new int[root.level + 1];
+		nodes[0] = root;
+		top = 0;
+	}
+	
+	@Override
+	public boolean hasNext() {
+		if (next == null) { next = advance(); }
+		return next != null;
+	}
+	
+	@Override
+	public Rectangle next() {
+		if (!hasNext()) { throw new NoSuchElementException(); }
+		Rectangle res = next;
+		next = null;
+		return res;
+	}
+	
+	private Rectangle advance() { // Walk on till the next data inside the rectangle
+		while (top >= 0) {
+			RTNode node = nodes[top];
+			int i = positions[top] ++;
+			if (i >= node.usedSpace) { // Node done, back to its parent
+				nodes[top --] = null;
+				continue;
+			}
+			if (node.isLeaf()) {
+				if (node.enclosedBy(rec, i)) { return ((RTDataNode) node).getData(i); }
+			} else if (node.intersects(i, rec)) {
+				nodes[++ top] = ((RTDirNode) node).getChild(i);
+				positions[top] = 0;
+			}
+		}
+		return null;
+	}
+}
\ No newline at end of file
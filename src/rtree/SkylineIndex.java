@@ -0,0 +1,100 @@
+// Main-memory R-tree over the skyline points, answers the dominance checks of BBS without scanning the whole skyline
+// A point q is dominated if a skyline point lies in the box from minus infinity to q, so only the entries whose
+// low corner dominates q are visited, and the points q dominates lie below the entries whose high corner q dominates
+
+package rtree;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SkylineIndex {
+	private static final int CAPACITY = 16;
+	
+	private RTree tree;
+	private int dimension;
+	private int size;
+	
+	public SkylineIndex(int dimension) {
+		this.dimension = dimension;
+		tree = new RTree(CAPACITY, 0.4, Constants.RSTAR, dimension) { // Holds the data of another tree, their ids belong to that tree
+			@Override
+			protected void placed(long id, RTDataNode leaf) {}
+			
+			@Override
+			protected void removed(long id) {}
+		};
+	}
+	
+	public int size() { return size; }
+	
+	public void add(Rectangle rec) { // Kept as given with its id, so the skyline returns the same data as the other queries
+		tree.beginUpdate();
+		tree.insertData(rec);
+		tree.endUpdate();
+		size ++;
+	}
+	
+	public boolean remove(Rectangle rec) {
+		if (tree.delete(rec) < 0) { return false; }
+		size --;
+		return true;
+	}
+	
+	public List<Rectangle> toList() { return tree.getPoints(tree.getRoot()); }
+	
+	public boolean isDominated(Rectangle rec) { return isDominated(rec.lows(), 0); }
+	
+	public boolean isDominated(double[] lows, int off) { // Judge if a skyline point dominates the low corner
+		return isDominated(tree.getRoot(), lows, off, false);
+	}
+	
+	public boolean isDominated(double[] lows, int off, boolean strict) { // If strict, a skyline point equal to the corner doesn't count
+		return isDominated(tree.getRoot(), lows, off, strict);
+	}
+	
+	private boolean isDominated(RTNode node, double[] q, int off, boolean strict) {
+		for (int i = 0; i < node.usedSpace; i ++) {
+			int entry = i * dimension;
+			if (!Geometry.dominates(node.lows, entry, q, off, dimension)) { continue; }
+			if (node.isLeaf()) {
+				if (!strict || !Geometry.equals(node.lows, node.lows, entry, q, q, off, dimension)) { return true; }
+			} else if (isDominated(((RTDirNode) node).getChild(i), q, off, strict)) { return true; }
+		}
+		return false;
+	}
+	
+	// Number of points dominating the low corner, counted up to limit. A point equal to the corner doesn't dominate it,
+	// nor anything in a box with that corner
+	public int countDominating(double[] lows, int off, int limit) {
+		return countDominating(tree.getRoot(), lows, off, limit, 0);
+	}
+	
+	private int countDominating(RTNode node, double[] q, int off, int limit, int count) {
+		for (int i = 0; i < node.usedSpace && count < limit; i ++) {
+			int entry = i * dimension;
+			if (!Geometry.dominates(node.lows, entry, q, off, dimension)) { continue; }
+			if (node.isLeaf()) {
+				if (!Geometry.equals(node.lows, node.lows, entry, q, q, off, dimension)) { count ++; }
+			} else { count = countDominating(((RTDirNode) node).getChild(i), q, off, limit, count); }
+		}
+		return count;
+	}
+	
+	public List<Rectangle> removeDominated(Rectangle rec) { // Remove the skyline points dominated by the rectangle and return them
+		List<Rectangle> res = new ArrayList<>();
+		collectDominated(tree.getRoot(), rec.lows(), res);
+		for (int i = 0; i < res.size(); i ++) {
+			remove(res.get(i));
+		}
+		return res;
+	}
+	
+	private void collectDominated(RTNode node, double[] q, List<Rectangle> res) {
+		for (int i = 0; i < node.usedSpace; i ++) {
+			int off = i * dimension;
+			if (node.isLeaf()) {
+				if (Geometry.dominates(q, 0, node.lows, off, dimension)) { res.add(((RTDataNode) node).getData(i)); }
+			} else if (Geometry.dominates(q, 0, node.highs, off, dimension)) { collectDominated(((RTDirNode) node).getChild(i), q, res); }
+		}
+	}
+}
\ No newline at end of file
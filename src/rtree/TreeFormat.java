@@ -0,0 +1,288 @@
+// Binary file of a whole tree, so that it can be loaded again without rebuilding it
+// Header: magic, version, tree type, capacity, fill factor, dimension, height, counts of nodes and entries, body length,
+// the next entry id, the data space of the Hilbert curve if it has one, then the CRC32C of the header
+// Body: the nodes in preorder, each as level, entry count, low coordinates, high coordinates, for Hilbert trees
+// the Hilbert values and for leaves the entry ids. The children of an index node follow it in order. The CRC32C of
+// the body closes the file. Version 1 files have no next id and no entry ids, they are still read
+// Numbers are little-endian, the file is written and read through a large buffer in bulk
+
+package rtree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+public class TreeFormat {
+	public static final int MAGIC = 0x46525452; // "RTRF"
+	public static final int VERSION = 2;
+	private static final int BUFFER_SIZE = 1 << 20;
+	
+	private TreeFormat() {}
+	
+	public static void save(RTree tree, Path path) throws IOException {
+		if (tree == null) { throw new IllegalArgumentException("Tree cannot be null."); }
+		if (path == null) { throw new IllegalArgumentException("Path cannot be null."); }
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			int dimension = tree.getDimension();
+			int header = headerSize(VERSION, tree.getHilbertCurve() != null && tree.getHilbertCurve().lows() != null, dimension);
+			Output out = new Output(channel, header, Math.max(BUFFER_SIZE, nodeSize(VERSION, tree.getCapacity() + 1, dimension, true, true)));
+			long[] counts = new long[2]; // Nodes and entries
+			writeNode(out, tree.getRoot(), counts);
+			long bodyLength = out.finish();
+			
+			ByteBuffer buf = ByteBuffer.allocate(header).order(ByteOrder.LITTLE_ENDIAN);
+			buf.putInt(MAGIC);
+			buf.putInt(VERSION);
+			buf.putInt(tree.getTreeType());
+			buf.putInt(tree.getCapacity());
+			buf.putDouble(tree.getFillFactor());
+			buf.putInt(dimension);
+			buf.putInt(tree.getRoot().level);
+			buf.putLong(counts[0]);
+			buf.putLong(counts[1]);
+			buf.putLong(bodyLength);
+			buf.putLong(tree.getNextId());
+			HilbertCurve curve = tree.getHilbertCurve();
+			if (curve != null && curve.lows() != null) {
+				buf.put((byte) 1);
+				for (int d = 0; d < dimension; d ++) {
+					buf.putDouble(curve.lows()[d]);
+					buf.putDouble(curve.highs()[d]);
+				}
+			} else { buf.put((byte) 0); }
+			CRC32C crc = new CRC32C();
+			crc.update(buf.array(), 0, buf.position());
+			buf.putInt((int) crc.getValue());
+			buf.flip();
+			while (buf.hasRemaining()) {
+				channel.write(buf, buf.position());
+			}
+		}
+	}
+	
+	public static RTree load(Path path) throws IOException {
+		if (path == null) { throw new IllegalArgumentException("Path cannot be null."); }
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer buf = ByteBuffer.allocate(headerSize(VERSION, false, 0)).order(ByteOrder.LITTLE_ENDIAN); // Also what a version 1 header and body take at least
+			readHeader(channel, buf, 0);
+			if (buf.remaining() < buf.capacity() || buf.getInt() != MAGIC) { throw new IllegalArgumentException("Not a tree file."); }
+			int version = buf.getInt();
+			if (version < 1 || version > VERSION) { throw new IllegalArgumentException("Unsupported tree file version."); }
+			int treeType = buf.getInt();
+			int capacity = buf.getInt();
+			double fillFactor = buf.getDouble();
+			int dimension = buf.getInt();
+			int height = buf.getInt();
+			long nodes = buf.getLong();
+			long entries = buf.getLong();
+			long bodyLength = buf.getLong();
+			long nextId = version == 1 ? 1 : buf.getLong();
+			boolean hasCurve = buf.get() == 1;
+			if (dimension < 1 || capacity < 2 || treeType < Constants.RTREE_LINEAR || treeType > Constants.HILBERT || nextId < 1) { throw new IllegalArgumentException("Corrupt tree file header."); }
+			
+			int header = headerSize(version, hasCurve, dimension);
+			buf = ByteBuffer.allocate(header).order(ByteOrder.LITTLE_ENDIAN);
+			readHeader(channel, buf, 0);
+			CRC32C crc = new CRC32C();
+			crc.update(buf.array(), 0, header - 4);
+			if (buf.getInt(header - 4) != (int) crc.getValue()) { throw new IllegalArgumentException("Tree file header checksum mismatch."); }
+			if (channel.size() != header + bodyLength + 4) { throw new IllegalArgumentException("Tree file is truncated."); }
+			
+			RTree tree = new RTree(capacity, fillFactor, treeType, dimension);
+			if (hasCurve) {
+				buf.position(header - 4 - 16 * dimension);
+				double[] low = new double[dimension];
+				double[] high = new double[dimension];
+				for (int d = 0; d < dimension; d ++) {
+					low[d] = buf.getDouble();
+					high[d] = buf.getDouble();
+				}
+				tree.setHilbertCurve(new HilbertCurve(dimension, low, high));
+			}
+			tree.setNextId(nextId);
+			Input in = new Input(channel, header, bodyLength, Math.max(BUFFER_SIZE, nodeSize(version, capacity, dimension, true, true)));
+			long[] counts = new long[2];
+			RTNode root = readNode(in, version, tree, Constants.NULL, height, counts);
+			if (in.remaining() != 0 || counts[0] != nodes || counts[1] != entries) { throw new IllegalArgumentException("Corrupt tree file body."); }
+			in.verify();
+			tree.setRoot(root);
+			return tree;
+		}
+	}
+	
+	private static int headerSize(int version, boolean hasCurve, int dimension) { return (version == 1 ? 57 : 65) + (hasCurve ? 16 * dimension : 0) + 4; }
+	
+	private static int nodeSize(int version, int entries, int dimension, boolean hilbert, boolean leaf) {
+		return 8 + entries * (16 * dimension + (hilbert ? 8 : 0) + (leaf && version > 1 ? 8 : 0));
+	}
+	
+	private static void readHeader(FileChannel channel, ByteBuffer buf, long pos) throws IOException {
+		buf.clear();
+		while (buf.hasRemaining()) {
+			int n = channel.read(buf, pos + buf.position());
+			if (n < 0) { break; }
+		}
+		buf.flip();
+	}
+	
+	private static void writeNode(Output out, RTNode node, long[] counts) throws IOException {
+		int n = node.usedSpace;
+		int dimension = node.dimension;
+		out.ensure(nodeSize(VERSION, n, dimension, node.hilberts != null, node.isLeaf()));
+		ByteBuffer buf = out.buf;
+		buf.putInt(node.level);
+		buf.putInt(n);
+		putDoubles(buf, node.lows, n * dimension);
+		putDoubles(buf, node.highs, n * dimension);
+		if (node.hilberts != null) {
+			buf.asLongBuffer().put(node.hilberts, 0, n);
+			buf.position(buf.position() + n * 8);
+		}
+		counts[0] ++;
+		if (node.isLeaf()) {
+			buf.asLongBuffer().put(((RTDataNode) node).ids, 0, n);
+			buf.position(buf.position() + n * 8);
+			counts[1] += n;
+			return;
+		}
+		for (int i = 0; i < n; i ++) {
+			writeNode(out, ((RTDirNode) node).getChild(i), counts);
+		}
+	}
+	
+	private static RTNode readNode(Input in, int version, RTree tree, RTNode parent, int level, long[] counts) throws IOException {
+		in.need(8);
+		ByteBuffer buf = in.buf;
+		int nodeLevel = buf.getInt();
+		int n = buf.getInt();
+		int dimension = tree.getDimension();
+		if (nodeLevel != level || n < 0 || n > tree.getCapacity() || (n == 0 && parent != Constants.NULL)) { throw new IllegalArgumentException("Corrupt tree file body."); }
+		RTNode node = level == 0 ? new RTDataNode(tree, parent) : new RTDirNode(tree, parent, level);
+		in.need(nodeSize(version, n, dimension, node.hilberts != null, node.isLeaf()) - 8);
+		getDoubles(buf, node.lows, n * dimension);
+		getDoubles(buf, node.highs, n * dimension);
+		if (node.hilberts != null) {
+			buf.asLongBuffer().get(node.hilberts, 0, n);
+			buf.position(buf.position() + n * 8);
+		}
+		node.usedSpace = n;
+		counts[0] ++;
+		if (node.isLeaf()) {
+			RTDataNode leaf = (RTDataNode) node;
+			if (version > 1) {
+				buf.asLongBuffer().get(leaf.ids, 0, n);
+				buf.position(buf.position() + n * 8);
+			}
+			for (int i = 0; i < n; i ++) { // The tree knows the leaf of every id again
+				long id = leaf.ids[i];
+				if (id < 0 || id >= tree.getNextId()) { throw new IllegalArgumentException("Corrupt tree file body."); }
+				if (id != 0) { tree.placed(id, leaf); }
+			}
+			counts[1] += n;
+		} else {
+			RTDirNode dir = (RTDirNode) node;
+			for (int i = 0; i < n; i ++) {
+				RTNode child = readNode(in, version, tree, dir, level - 1, counts);
+				dir.children.add(child);
+				dir.counts[i] = child.count(); // Not in the file, summed up again from the children
+			}
+		}
+		return node;
+	}
+	
+	private static void putDoubles(ByteBuffer buf, double[] values, int n) {
+		buf.asDoubleBuffer().put(values, 0, n);
+		buf.position(buf.position() + n * 8);
+	}
+	
+	private static void getDoubles(ByteBuffer buf, double[] values, int n) {
+		buf.asDoubleBuffer().get(values, 0, n);
+		buf.position(buf.position() + n * 8);
+	}
+	
+	private static class Output { // Buffered writer of the body, the header is written last in front of it
+		FileChannel channel;
+		ByteBuffer buf;
+		long pos; // Where the buffer goes in the file
+		long length;
+		CRC32C crc = new CRC32C();
+		
+		Output(FileChannel channel, long start, int size) {
+			this.channel = channel;
+			pos = start;
+			buf = ByteBuffer.allocateDirect(size).order(ByteOrder.LITTLE_ENDIAN);
+		}
+		
+		void ensure(int n) throws IOException { // Room for n more bytes
+			if (buf.remaining() < n) { drain(); }
+		}
+		
+		void drain() throws IOException {
+			buf.flip();
+			crc.update(buf.duplicate());
+			length += buf.remaining();
+			while (buf.hasRemaining()) {
+				pos += channel.write(buf, pos);
+			}
+			buf.clear();
+		}
+		
+		long finish() throws IOException { // Write the rest and the checksum, returns the length of the body
+			drain();
+			long bodyLength = length;
+			buf.putInt((int) crc.getValue());
+			buf.flip();
+			while (buf.hasRemaining()) {
+				pos += channel.write(buf, pos);
+			}
+			return bodyLength;
+		}
+	}
+	
+	private static class Input { // Buffered reader of the body, checks the checksum of what it reads
+		FileChannel channel;
+		ByteBuffer buf;
+		long pos; // Next file position to read
+		long left; // Body bytes not read from the file yet
+		CRC32C crc = new CRC32C();
+		
+		Input(FileChannel channel, long start, long length, int size) {
+			this.channel = channel;
+			pos = start;
+			left = length;
+			buf = ByteBuffer.allocateDirect(size).order(ByteOrder.LITTLE_ENDIAN);
+			buf.flip();
+		}
+		
+		long remaining() { return left + buf.remaining(); }
+		
+		void need(int n) throws IOException { // At least n bytes in the buffer
+			if (buf.remaining() >= n) { return; }
+			if (remaining() < n) { throw new IllegalArgumentException("Corrupt tree file body."); }
+			buf.compact();
+			int start = buf.position();
+			if (buf.remaining() > left) { buf.limit(start + (int) left); }
+			while (buf.hasRemaining()) { // Fill the buffer, not just the bytes needed
+				int read = channel.read(buf, pos);
+				if (read < 0) { throw new IllegalArgumentException("Tree file is truncated."); }
+				pos += read;
+			}
+			left -= buf.position() - start;
+			ByteBuffer fresh = buf.duplicate();
+			fresh.flip();
+			fresh.position(start);
+			crc.update(fresh);
+			buf.flip();
+		}
+		
+		void verify() throws IOException { // Compare the checksum at the end of the body
+			ByteBuffer sum = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+			readHeader(channel, sum, pos);
+			if (sum.remaining() < 4 || sum.getInt() != (int) crc.getValue()) { throw new IllegalArgumentException("Tree file checksum mismatch."); }
+		}
+	}
+}
\ No newline at end of file
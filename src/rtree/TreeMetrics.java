@@ -0,0 +1,115 @@
+// Opt-in metrics of a tree, set by RTree.setMetrics. Without it every hook of the tree is a null check
+// Each operation gets a QueryStats that the tree fills as it runs, kept per thread so concurrent readers don't mix.
+// An operation called by another one, like the bulk load of a first insertAll, adds its counters to the outer one.
+// At its end the stats are added to the totals of the operation and its latency histogram, and passed to the listeners.
+// snapshot gives all totals as a flat map, which is what an exporter (JMX, a log line, a scrape endpoint) needs
+
+package rtree;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class TreeMetrics {
+	private ThreadLocal<QueryStats> current = new ThreadLocal<>(); // Running operation of the thread
+	private ThreadLocal<QueryStats> last = new ThreadLocal<>(); // Last finished operation of the thread
+	private Map<String, QueryStats> totals = new TreeMap<>(); // By operation
+	private Map<String, LatencyHistogram> latencies = new TreeMap<>();
+	private List<MetricsListener> listeners = new CopyOnWriteArrayList<>();
+	
+	public void addListener(MetricsListener listener) {
+		if (listener == null) { throw new IllegalArgumentException("Listener cannot be null."); }
+		listeners.add(listener);
+	}
+	
+	public void removeListener(MetricsListener listener) { listeners.remove(listener); }
+	
+	public QueryStats getLastStats() { return last.get(); } // Stats of the last operation the calling thread finished
+	
+	public synchronized long getCount(String operation) {
+		LatencyHistogram latency = latencies.get(operation);
+		return latency == null ? 0 : latency.getCount();
+	}
+	
+	public synchronized QueryStats getTotals(String operation) { // Counters summed over all the operations of the kind
+		QueryStats total = totals.get(operation);
+		QueryStats res = new QueryStats(operation);
+		if (total != null) {
+			res.add(total);
+			res.nanos = total.nanos;
+		}
+		return res;
+	}
+	
+	public synchronized LatencyHistogram getLatency(String operation) {
+		LatencyHistogram latency = latencies.get(operation);
+		return latency == null ? new LatencyHistogram() : latency.copy();
+	}
+	
+	// All totals keyed by operation and name, e.g. search.count, search.nodeVisits, search.latency.p99 (nanoseconds)
+	public synchronized Map<String, Long> snapshot() {
+		Map<String, Long> res = new TreeMap<>();
+		for (Map.Entry<String, QueryStats> e : totals.entrySet()) {
+			String op = e.getKey();
+			QueryStats t = e.getValue();
+			LatencyHistogram latency = latencies.get(op);
+			res.put(op + ".count", latency.getCount());
+			res.put(op + ".nanos", t.nanos);
+			res.put(op + ".nodeVisits", t.nodeVisits);
+			res.put(op + ".leafVisits", t.leafVisits);
+			res.put(op + ".splits", t.splits);
+			res.put(op + ".condenses", t.condenses);
+			res.put(op + ".reinserts", t.reinserts);
+			res.put(op + ".dominanceChecks", t.dominanceChecks);
+			res.put(op + ".heapPushes", t.heapPushes);
+			res.put(op + ".results", t.results);
+			res.put(op + ".latency.mean", Math.round(latency.getMean()));
+			res.put(op + ".latency.p50", latency.getPercentile(50));
+			res.put(op + ".latency.p90", latency.getPercentile(90));
+			res.put(op + ".latency.p99", latency.getPercentile(99));
+			res.put(op + ".latency.max", latency.getMax());
+		}
+		return res;
+	}
+	
+	public synchronized void reset() {
+		totals.clear();
+		latencies.clear();
+	}
+	
+	protected QueryStats current() { return current.get(); }
+	
+	protected QueryStats begin(String operation) {
+		QueryStats stats = new QueryStats(operation);
+		stats.metrics = this;
+		stats.outer = current.get();
+		current.set(stats);
+		stats.start = System.nanoTime();
+		return stats;
+	}
+	
+	protected void end(QueryStats stats) {
+		stats.nanos = System.nanoTime() - stats.start;
+		current.set(stats.outer);
+		if (stats.outer != null) { // Part of the outer operation
+			stats.outer.add(stats);
+			return;
+		}
+		last.set(stats);
+		synchronized (this) {
+			QueryStats total = totals.get(stats.operation);
+			if (total == null) {
+				total = new QueryStats(stats.operation);
+				totals.put(stats.operation, total);
+				latencies.put(stats.operation, new LatencyHistogram());
+			}
+			total.add(stats);
+			total.nanos += stats.nanos;
+			latencies.get(stats.operation).record(stats.nanos);
+		}
+		for (MetricsListener listener : listeners) {
+			listener.operationFinished(stats);
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,106 @@
+// Measures of how well a tree or subtree is organized, taken from all its nodes as listed by traversePost
+// Level l counts the nodes on level l and their entries: the data for the leaves, the rectangles of the children above.
+// Fill is the share of the slots in use. Area and margin are summed over the entries, overlap over every pair of entries
+// in the same node, so it is the area a search may have to look at twice. A grown tree has more overlap and lower fill
+// than a packed one, and may be higher than the packed height
+
+package rtree;
+
+import java.util.List;
+
+public class TreeQuality {
+	private int capacity;
+	private int height;
+	private long data;
+	private long[] nodes; // By level
+	private long[] entries;
+	private double[] area;
+	private double[] margin;
+	private double[] overlap;
+	
+	public TreeQuality(RTree tree, RTNode node) {
+		if (node == null) { throw new IllegalArgumentException("Node cannot be null."); }
+		capacity = tree.getCapacity();
+		height = node.level + 1;
+		nodes = new long[height];
+		entries = new long[height];
+		area = new double[height];
+		margin = new double[height];
+		overlap = new double[height];
+		int dimension = tree.getDimension();
+		List<RTNode> list = tree.traversePost(node);
+		for (int k = 0; k < list.size(); k ++) {
+			RTNode n = list.get(k);
+			int l = n.level;
+			nodes[l] ++;
+			entries[l] += n.usedSpace;
+			for (int i = 0; i < n.usedSpace; i ++) {
+				area[l] += Geometry.area(n.lows, n.highs, i * dimension, dimension);
+				margin[l] += Geometry.margin(n.lows, n.highs, i * dimension, dimension);
+				for (int j = i + 1; j < n.usedSpace; j ++) {
+					overlap[l] += Geometry.intersectArea(n.lows, n.highs, i * dimension, n.lows, n.highs, j * dimension, dimension);
+				}
+			}
+		}
+		data = entries[0];
+	}
+	
+	public int getHeight() { return height; }
+	
+	public int getPackedHeight() { // Height of the tree packed to full nodes with the same data
+		int h = 1;
+		for (long n = (data + capacity - 1) / capacity; n > 1; n = (n + capacity - 1) / capacity) {
+			h ++;
+		}
+		return h;
+	}
+	
+	public long getDataCount() { return data; }
+	
+	public long getNodeCount() {
+		long res = 0;
+		for (int l = 0; l < height; l ++) {
+			res += nodes[l];
+		}
+		return res;
+	}
+	
+	public long getNodeCount(int level) { return nodes[level]; }
+	
+	public double getFill(int level) { return nodes[level] == 0 ? 0 : (double) entries[level] / (nodes[level] * capacity); }
+	
+	public double getFill() { // Of all the nodes but the top one, which may hold any number of entries
+		long used = 0, slots = 0;
+		for (int l = 0; l < height - 1; l ++) {
+			used += entries[l];
+			slots += nodes[l] * capacity;
+		}
+		return slots == 0 ? 1 : (double) used / slots;
+	}
+	
+	public double getArea(int level) { return area[level]; }
+	
+	public double getMargin(int level) { return margin[level]; }
+	
+	public double getOverlap(int level) { return overlap[level]; }
+	
+	public double getOverlapRatio() { // Overlap of the index entries over their area, 0 if the entries of each node are disjoint
+		double o = 0, a = 0;
+		for (int l = 1; l < height; l ++) {
+			o += overlap[l];
+			a += area[l];
+		}
+		return a == 0 ? 0 : o / a;
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder res = new StringBuilder();
+		res.append("height " + height + " (packed " + getPackedHeight() + "), data " + data + ", nodes " + getNodeCount());
+		res.append(String.format(", fill %.3f, overlap ratio %.3f", getFill(), getOverlapRatio()));
+		for (int l = height - 1; l >= 0; l --) {
+			res.append(String.format("%nlevel %d: nodes %d, fill %.3f, area %.6g, margin %.6g, overlap %.6g", l, nodes[l], getFill(l), area[l], margin[l], overlap[l]));
+		}
+		return res.toString();
+	}
+}
\ No newline at end of file
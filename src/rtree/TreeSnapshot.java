@@ -0,0 +1,48 @@
+// Point-in-time view of a tree in copy-on-write mode
+// Later updates of the tree copy the nodes they change instead of writing to them, so the nodes of a snapshot never change
+// and every query runs on it without synchronization. A snapshot only offers the queries, run on a tree that shares the
+// layout of the updated one and has the root published by its last finished update
+
+package rtree;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+public class TreeSnapshot {
+	private RTree tree;
+	
+	TreeSnapshot(RTree tree, RTNode root) { this.tree = new RTree(tree, root); }
+	
+	public int getDimension() { return tree.getDimension(); }
+	
+	public List<Rectangle> search(Rectangle rec) { return tree.search(rec); }
+	
+	public SearchIterator searchIterator(Rectangle rec) { return tree.searchIterator(rec); }
+	
+	public Stream<Rectangle> searchStream(Rectangle rec) { return tree.searchStream(rec); }
+	
+	public List<Rectangle> nearest(Point q, int k) { return tree.nearest(q, k); }
+	
+	public DistanceBrowser distanceBrowse(Point q) { return tree.distanceBrowse(q); }
+	
+	public List<Rectangle> skyline() { return tree.skyline(); }
+	
+	public List<Rectangle> skyline(Rectangle constraint) { return tree.skyline(constraint); }
+	
+	public List<Rectangle> getSkyline() { return tree.skyline(); } // Nothing to keep up to date
+	
+	public List<Rectangle> parallelSkyline() { return tree.parallelSkyline(); }
+	
+	public List<Rectangle> parallelSkyline(ForkJoinPool pool) { return tree.parallelSkyline(pool); }
+	
+	public List<Rectangle> kSkyband(int k) { return tree.kSkyband(k); }
+	
+	public List<Rectangle> topKDominating(int k) { return tree.topKDominating(k); }
+	
+	public List<Rectangle> getPoints() { return tree.getPoints(tree.getRoot()); } // All the data
+	
+	public TreeQuality analyze() { return tree.analyze(); }
+	
+	RTNode getRoot() { return tree.getRoot(); }
+}
\ No newline at end of file
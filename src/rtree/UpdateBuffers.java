@@ -0,0 +1,54 @@
+// Working arrays of the updates of one tree, reused by every split, forced reinsert, Hilbert insertion and choice of a
+// subtree instead of allocated each time. They are sized for a node holding its overflowing entry, twice for the Hilbert
+// insertion. Only one update runs at a time on a tree, and each array is done with before the step that uses it goes on
+// to insert anything
+
+package rtree;
+
+class UpdateBuffers {
+	double[] low1, high1, low2, high2; // Rectangles of the two groups of a split
+	double[] low, high; // An entry grown by the new rectangle while a subtree is chosen
+	double[] coverLow, coverHigh; // Rectangle of a node, for the forced reinsert
+	int[] seeds = new int[2]; // First entries of the two groups of a split
+	boolean[] assigned; // Entries given to a group by the quadratic split
+	int[] order; // Result of a split, the first group followed by the second. Also the sorting of the forced reinsert
+	int[] group; // Second group while a split is built
+	double[] preLows, preHighs, sufLows, sufHighs; // Covers of the first and the last entries in the R* split
+	double[] dist; // Distances of the entries to the center of their node
+	int[] far; // Entries picked by the forced reinsert, closest first
+	double[] farLows, farHighs; // Data taken out of a leaf by the forced reinsert
+	long[] farIds;
+	double[] entryLows, entryHighs; // Entries of two nodes and a new one, shared out again by the Hilbert insertion
+	long[] entryHilberts;
+	int[] entryCounts;
+	Object[] entryPayloads;
+	
+	UpdateBuffers(int capacity, int dimension) {
+		int total = capacity + 1;
+		low1 = new double[dimension];
+		high1 = new double[dimension];
+		low2 = new double[dimension];
+		high2 = new double[dimension];
+		low = new double[dimension];
+		high = new double[dimension];
+		coverLow = new double[dimension];
+		coverHigh = new double[dimension];
+		assigned = new boolean[total];
+		order = new int[total];
+		group = new int[total];
+		preLows = new double[total * dimension];
+		preHighs = new double[total * dimension];
+		sufLows = new double[total * dimension];
+		sufHighs = new double[total * dimension];
+		dist = new double[total];
+		far = new int[total];
+		farLows = new double[total * dimension];
+		farHighs = new double[total * dimension];
+		farIds = new long[total];
+		entryLows = new double[2 * total * dimension];
+		entryHighs = new double[2 * total * dimension];
+		entryHilberts = new long[2 * total];
+		entryCounts = new int[2 * total];
+		entryPayloads = new Object[2 * total];
+	}
+}
\ No newline at end of file
@@ -0,0 +1,163 @@
+package rtree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class ConcurrentRTreeTest {
+	private static final Rectangle FIXED = new Rectangle(new Point(new double[] {0, 0}), new Point(new double[] {0.5, 1})); // Only read
+	private static final Rectangle MOVING = new Rectangle(new Point(new double[] {0.6, 0}), new Point(new double[] {1, 1})); // Written
+	
+	@Test
+	public void readersSeeEveryFinishedWrite() throws Exception {
+		int[] types = {Constants.RTREE_QUADRATIC, Constants.RSTAR, Constants.HILBERT};
+		for (int t = 0; t < types.length; t ++) {
+			run(new ConcurrentRTree(8, 0.4, types[t], 2));
+		}
+	}
+	
+	private void run(final ConcurrentRTree tree) throws Exception {
+		final List<Rectangle> fixed = scaled(DataGenerator.independent(2000, 2, 1), 0, 0.5);
+		final List<Rectangle> moving = scaled(DataGenerator.independent(2000, 2, 2), 0.6, 0.4);
+		for (int i = 0; i < fixed.size(); i ++) {
+			tree.insert(fixed.get(i));
+		}
+		final AtomicBoolean done = new AtomicBoolean();
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		List<Thread> threads = new ArrayList<>();
+		for (int w = 0; w < 2; w ++) {
+			final int part = w;
+			threads.add(new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						for (int r = 0; r < 5; r ++) { // Each writer moves its half of the points in and out
+							for (int i = part; i < moving.size(); i += 2) {
+								assertTrue(tree.insert(moving.get(i)));
+							}
+							for (int i = part; i < moving.size(); i += 2) {
+								assertTrue(tree.delete(moving.get(i)) >= 0);
+							}
+						}
+					} catch (Throwable e) { failure.compareAndSet(null, e); }
+				}
+			}));
+		}
+		for (int r = 0; r < 3; r ++) {
+			threads.add(new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						while (!done.get()) {
+							assertEquals(fixed.size(), tree.search(FIXED).size());
+							List<Rectangle> res = tree.search(MOVING);
+							assertTrue(res.size() <= moving.size());
+							assertEquals(res.size(), new HashSet<>(res).size());
+							assertEquals(5, tree.nearest(new Point(new double[] {0.25, 0.5}), 5).size());
+						}
+					} catch (Throwable e) { failure.compareAndSet(null, e); }
+				}
+			}));
+		}
+		for (int i = 0; i < threads.size(); i ++) {
+			threads.get(i).start();
+		}
+		threads.get(0).join();
+		threads.get(1).join();
+		done.set(true);
+		for (int i = 2; i < threads.size(); i ++) {
+			threads.get(i).join();
+		}
+		assertNull(failure.get());
+		assertEquals(fixed.size(), tree.getPoints().size());
+		assertEquals(0, tree.search(MOVING).size());
+	}
+	
+	@Test
+	public void rebuildsKeepTheIdsWrittenMeanwhile() throws Exception {
+		int[] types = {Constants.RSTAR, Constants.HILBERT};
+		for (int t = 0; t < types.length; t ++) {
+			final ConcurrentRTree tree = new ConcurrentRTree(8, 0.4, types[t], 2);
+			ExecutorService executor = Executors.newSingleThreadExecutor();
+			tree.setRebuildPolicy(new RebuildPolicy(200, 0, 0, 0), executor); // Any overlap is too much, it rebuilds all the time
+			final Map<Long, Rectangle> model = new ConcurrentHashMap<>();
+			final AtomicReference<Throwable> failure = new AtomicReference<>();
+			List<Thread> writers = new ArrayList<>();
+			for (int w = 0; w < 2; w ++) {
+				final long seed = w;
+				writers.add(new Thread(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							Random random = new Random(seed);
+							List<Long> ids = new ArrayList<>();
+							for (int r = 0; r < 20000; r ++) {
+								Rectangle rec = new Rectangle(new Point(new double[] {random.nextDouble(), random.nextDouble()}));
+								int op = ids.isEmpty() ? 0 : random.nextInt(5);
+								if (op <= 1) {
+									long id = tree.insertWithId(rec);
+									ids.add(id);
+									model.put(id, rec);
+								} else if (op == 2) {
+									long id = ids.get(random.nextInt(ids.size()));
+									assertEquals(model.containsKey(id), tree.update(id, rec));
+									if (model.containsKey(id)) { model.put(id, rec); }
+								} else if (op == 3) {
+									long id = ids.get(random.nextInt(ids.size()));
+									assertEquals(model.remove(id) != null, tree.delete(id));
+								} else { // By its rectangle, the entry found keeps its id
+									Rectangle old = model.remove(ids.get(random.nextInt(ids.size())));
+									if (old != null) { assertTrue(tree.delete(old) >= 0); }
+								}
+							}
+						} catch (Throwable e) { failure.compareAndSet(null, e); }
+					}
+				}));
+			}
+			for (int i = 0; i < writers.size(); i ++) {
+				writers.get(i).start();
+			}
+			for (int i = 0; i < writers.size(); i ++) {
+				writers.get(i).join();
+			}
+			executor.shutdown();
+			assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+			assertNull(failure.get());
+			assertTrue(tree.getRebuildCount() > 0);
+			
+			List<Rectangle> all = tree.getPoints();
+			assertEquals(model.size(), all.size());
+			for (int i = 0; i < all.size(); i ++) {
+				Rectangle rec = all.get(i);
+				assertEquals(model.get(rec.getId()), rec);
+				assertEquals(rec.getId(), tree.get(rec.getId()).getId());
+			}
+			for (Map.Entry<Long, Rectangle> e : model.entrySet()) {
+				assertEquals(e.getValue(), tree.get(e.getKey()));
+			}
+		}
+	}
+	
+	static List<Rectangle> scaled(List<Rectangle> points, double from, double width) { // Points moved to [from, from + width] on the first axis
+		List<Rectangle> res = new ArrayList<>();
+		for (int i = 0; i < points.size(); i ++) {
+			Rectangle p = points.get(i);
+			res.add(new Rectangle(new Point(new double[] {from + p.lowCoordinate(0) * width, p.lowCoordinate(1)})));
+		}
+		return res;
+	}
+}
\ No newline at end of file
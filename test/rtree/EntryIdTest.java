@@ -0,0 +1,77 @@
+package rtree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class EntryIdTest {
+	@Test
+	public void idsFollowUpdatesAndDeletes() {
+		for (int t = 0; t < RTreeTest.TYPES.length; t ++) {
+			for (int snapshots = 0; snapshots < 2; snapshots ++) {
+				RTree tree = new RTree(8, 0.4, RTreeTest.TYPES[t], 2);
+				if (snapshots == 1) { tree.enableSnapshots(); }
+				run(tree, t);
+			}
+		}
+	}
+	
+	private void run(RTree tree, long seed) {
+		Random random = new Random(seed);
+		Map<Long, Rectangle> model = new HashMap<>();
+		List<Long> ids = new ArrayList<>();
+		List<Rectangle> points = DataGenerator.independent(2000, 2, seed);
+		for (int i = 0; i < points.size(); i ++) {
+			long id = tree.insertWithId(points.get(i));
+			model.put(id, points.get(i));
+			ids.add(id);
+		}
+		assertIds(tree, model);
+		
+		for (int r = 0; r < 4000; r ++) {
+			long id = ids.get(random.nextInt(ids.size()));
+			if (r % 5 == 0) { // Delete, the id is gone for good
+				assertEquals(model.remove(id) != null, tree.delete(id));
+				assertFalse(tree.contains(id));
+				continue;
+			}
+			double step = r % 2 == 0 ? 0.001 : 0.5; // Small moves stay in the leaf or go to a sibling, large ones are reinserted
+			Rectangle old = model.get(id);
+			double[] c = old == null ? new double[] {0.5, 0.5} : new double[] {old.lowCoordinate(0), old.lowCoordinate(1)};
+			for (int d = 0; d < c.length; d ++) {
+				c[d] = (c[d] + random.nextDouble() * step) % 1; // Wrapped around, clamping would pile up equal points
+			}
+			Rectangle rec = new Rectangle(new Point(c));
+			assertEquals(old != null, tree.update(id, rec));
+			if (old != null) { model.put(id, rec); }
+			if (r % 1000 == 999) { assertIds(tree, model); }
+		}
+		tree.rebuild();
+		assertIds(tree, model);
+	}
+	
+	private static void assertIds(RTree tree, Map<Long, Rectangle> model) {
+		List<Rectangle> all = tree.getPoints(tree.getRoot());
+		assertEquals(model.size(), all.size());
+		for (int i = 0; i < all.size(); i ++) { // Every entry is found from its id, in the leaf it is in
+			Rectangle rec = all.get(i);
+			assertTrue(tree.contains(rec.getId()));
+			assertEquals(model.get(rec.getId()), rec);
+			assertEquals(rec.getId(), tree.get(rec.getId()).getId());
+		}
+		for (Map.Entry<Long, Rectangle> e : model.entrySet()) {
+			assertEquals(e.getValue(), tree.get(e.getKey()));
+		}
+		assertNull(tree.get(0));
+		RTreeTest.assertQueries(tree, new ArrayList<>(model.values()));
+	}
+}
\ No newline at end of file
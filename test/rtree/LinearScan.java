@@ -0,0 +1,106 @@
+// Answers of the queries by looking at every point, what the tree must return
+
+package rtree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+class LinearScan {
+	private LinearScan() {}
+	
+	static List<Rectangle> search(List<Rectangle> points, Rectangle window) {
+		List<Rectangle> res = new ArrayList<>();
+		for (int i = 0; i < points.size(); i ++) {
+			if (window.enclosure(points.get(i))) { res.add(points.get(i)); }
+		}
+		return res;
+	}
+	
+	static double[] nearestDistances(List<Rectangle> points, Point q, int k) { // Square distances of the k nearest, ascending
+		double[] all = new double[points.size()];
+		for (int i = 0; i < all.length; i ++) {
+			all[i] = distance(points.get(i), q);
+		}
+		Arrays.sort(all);
+		return Arrays.copyOf(all, Math.min(k, all.length));
+	}
+	
+	static double distance(Rectangle p, Point q) {
+		double res = 0;
+		for (int d = 0; d < q.getDimension(); d ++) {
+			double diff = p.lowCoordinate(d) - q.getCoordinate(d);
+			res += diff * diff;
+		}
+		return res;
+	}
+	
+	static List<Rectangle> skyband(List<Rectangle> points, int k) { // Points dominated by less than k others, the skyline for k = 1
+		List<Rectangle> res = new ArrayList<>();
+		for (int i = 0; i < points.size(); i ++) {
+			int count = 0;
+			for (int j = 0; j < points.size() && count < k; j ++) {
+				if (j != i && dominates(points.get(j), points.get(i))) { count ++; }
+			}
+			if (count < k) { res.add(points.get(i)); }
+		}
+		return res;
+	}
+	
+	static int dominated(List<Rectangle> points, Rectangle p) { // Number of points p dominates
+		int count = 0;
+		for (int i = 0; i < points.size(); i ++) {
+			if (dominates(p, points.get(i))) { count ++; }
+		}
+		return count;
+	}
+	
+	static int[] topDominated(List<Rectangle> points, int k) { // The k highest of those numbers over all points, descending
+		int[] all = new int[points.size()];
+		for (int i = 0; i < all.length; i ++) {
+			all[i] = -dominated(points, points.get(i));
+		}
+		Arrays.sort(all);
+		int[] res = Arrays.copyOf(all, Math.min(k, all.length));
+		for (int i = 0; i < res.length; i ++) {
+			res[i] = -res[i];
+		}
+		return res;
+	}
+	
+	private static boolean dominates(Rectangle p, Rectangle q) {
+		boolean less = false;
+		for (int d = 0; d < p.getDimension(); d ++) {
+			if (p.lowCoordinate(d) > q.lowCoordinate(d)) { return false; }
+			if (p.lowCoordinate(d) < q.lowCoordinate(d)) { less = true; }
+		}
+		return less;
+	}
+	
+	static List<String> sorted(List<Rectangle> recs) { // Comparable form of a result, the order of the tree doesn't matter
+		List<String> res = new ArrayList<>();
+		for (int i = 0; i < recs.size(); i ++) {
+			res.add(recs.get(i).toString());
+		}
+		Collections.sort(res);
+		return res;
+	}
+	
+	static List<Rectangle> windows(List<Rectangle> points, int count, double side, long seed) { // Square windows centered at data points
+		Random random = new Random(seed);
+		List<Rectangle> res = new ArrayList<>();
+		for (int i = 0; i < count; i ++) {
+			Rectangle p = points.get(random.nextInt(points.size()));
+			double[] low = new double[p.getDimension()];
+			double[] high = new double[p.getDimension()];
+			for (int d = 0; d < low.length; d ++) {
+				low[d] = p.lowCoordinate(d) - side / 2;
+				high[d] = p.lowCoordinate(d) + side / 2;
+			}
+			res.add(new Rectangle(new Point(low), new Point(high)));
+		}
+		return res;
+	}
+}
\ No newline at end of file
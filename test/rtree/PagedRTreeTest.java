@@ -0,0 +1,76 @@
+package rtree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PagedRTreeTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void pagedTreesAnswerLikeInMemoryOnes() throws IOException {
+		for (int t = 0; t < RTreeTest.TYPES.length; t ++) {
+			List<Rectangle> points = DataGenerator.antiCorrelated(3000, 2, t);
+			Path path = folder.newFile().toPath();
+			RTree memory = new RTree(8, 0.4, RTreeTest.TYPES[t], 2);
+			List<Rectangle> left = new ArrayList<>();
+			try (PagedRTree paged = new PagedRTree(path, 16, 8, 0.4, RTreeTest.TYPES[t], 2)) { // Far fewer pages cached than the tree has
+				for (int i = 0; i < points.size(); i ++) {
+					memory.insert(points.get(i));
+					paged.insert(points.get(i));
+				}
+				for (int i = 0; i < points.size(); i ++) {
+					if (i % 3 == 0) {
+						memory.delete(points.get(i));
+						paged.delete(points.get(i));
+					} else { left.add(points.get(i)); }
+				}
+				RTreeTest.assertQueries(memory, left);
+				RTreeTest.assertQueries(paged, left);
+			}
+			try (PagedRTree paged = PagedRTree.open(path, 16)) {
+				RTreeTest.assertQueries(paged, left);
+			}
+		}
+	}
+	
+	@Test
+	public void everyPageIsInTheTreeOrFree() throws IOException {
+		for (int t = 0; t < RTreeTest.TYPES.length; t ++) {
+			List<Rectangle> points = DataGenerator.independent(4000, 2, t);
+			Path path = folder.newFile().toPath();
+			try (PagedRTree paged = new PagedRTree(path, 16, 8, 0.4, RTreeTest.TYPES[t], 2)) {
+				paged.insertAll(points.subList(0, 2000)); // Bulk loaded, the nodes are written out as they are packed
+				assertPages(paged);
+				List<Rectangle> left = new ArrayList<>(points.subList(0, 2000));
+				for (int i = 2000; i < points.size(); i ++) {
+					paged.insert(points.get(i));
+					left.add(points.get(i));
+					if (i % 2 == 0) {
+						paged.delete(left.remove(i % left.size()));
+					}
+				}
+				assertPages(paged);
+				RTreeTest.assertQueries(paged, left);
+				paged.rebuild();
+				assertPages(paged);
+				RTreeTest.assertQueries(paged, left);
+			}
+		}
+	}
+	
+	private static void assertPages(PagedRTree paged) {
+		assertTrue(paged.getBufferPool().size() <= paged.getBufferPool().getCapacity());
+		PageFile file = paged.getPageFile();
+		assertEquals(file.getPageCount() - 1 - file.getFreeCount(), paged.analyze().getNodeCount());
+	}
+}
\ No newline at end of file
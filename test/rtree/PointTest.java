@@ -0,0 +1,26 @@
+package rtree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.junit.Test;
+
+public class PointTest {
+	@Test
+	public void signedZerosAreEqualWithEqualHashes() {
+		Point a = new Point(new double[] {0.0, 1.5});
+		Point b = new Point(new double[] {-0.0, 1.5});
+		assertEquals(a, b);
+		assertEquals(a.hashCode(), b.hashCode());
+		
+		Rectangle r = new Rectangle(a, new Point(new double[] {2, 3}));
+		Rectangle s = new Rectangle(b, new Point(new double[] {2, 3}));
+		assertEquals(r, s);
+		assertEquals(r.hashCode(), s.hashCode());
+	}
+	
+	@Test
+	public void differentPointsUsuallyHashApart() {
+		assertNotEquals(new Point(new double[] {1, 2}).hashCode(), new Point(new double[] {2, 1}).hashCode());
+	}
+}
\ No newline at end of file
@@ -0,0 +1,117 @@
+package rtree;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class RTreeTest {
+	static final int[] TYPES = {Constants.RTREE_LINEAR, Constants.RTREE_QUADRATIC, Constants.RTREE_EXPONENTIAL, Constants.RSTAR, Constants.HILBERT};
+	
+	@Test
+	public void insertedTreesAnswerLikeAScan() {
+		for (int t = 0; t < TYPES.length; t ++) {
+			for (int dimension = 2; dimension <= 3; dimension ++) {
+				List<Rectangle> points = DataGenerator.antiCorrelated(2000, dimension, t);
+				RTree tree = new RTree(8, 0.4, TYPES[t], dimension);
+				for (int i = 0; i < points.size(); i ++) {
+					tree.insert(points.get(i));
+				}
+				assertQueries(tree, points);
+				
+				List<Rectangle> left = new ArrayList<>();
+				for (int i = 0; i < points.size(); i ++) { // Every other point out, the tree condenses
+					if (i % 2 == 0) { assertTrue(tree.delete(points.get(i)) >= 0); }
+					else { left.add(points.get(i)); }
+				}
+				assertQueries(tree, left);
+			}
+		}
+	}
+	
+	@Test
+	public void packedTreesAnswerLikeAScan() {
+		for (int t = 0; t < TYPES.length; t ++) {
+			List<Rectangle> points = DataGenerator.independent(3000, 2, t);
+			RTree tree = RTree.bulkLoad(points, 16, 0.4, TYPES[t], 2);
+			assertQueries(tree, points);
+			
+			List<Rectangle> more = DataGenerator.correlated(500, 2, t);
+			tree.insertAll(more);
+			points.addAll(more);
+			assertQueries(tree, points);
+		}
+	}
+	
+	@Test
+	public void dominanceQueriesAnswerLikeAScan() { // With duplicates, and the counts of the subtrees kept through splits and deletions
+		for (int t = 0; t < TYPES.length; t ++) {
+			List<Rectangle> points = DataGenerator.antiCorrelated(1500, 3, t);
+			points.addAll(points.subList(0, 200));
+			RTree tree = new RTree(8, 0.4, TYPES[t], 3);
+			for (int i = 0; i < points.size(); i ++) {
+				tree.insert(points.get(i));
+			}
+			assertDominance(tree, points);
+			
+			List<Rectangle> left = new ArrayList<>();
+			for (int i = 0; i < points.size(); i ++) {
+				if (i % 3 == 0) { assertTrue(tree.delete(points.get(i)) >= 0); }
+				else { left.add(points.get(i)); }
+			}
+			List<Rectangle> more = DataGenerator.independent(500, 3, t);
+			tree.insertAll(more);
+			left.addAll(more);
+			assertDominance(tree, left);
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void exponentialTreesRejectLargeNodes() {
+		new RTree(ExponentialSplit.MAX_CAPACITY + 1, 0.4, Constants.RTREE_EXPONENTIAL, 2);
+	}
+	
+	static void assertQueries(RTree tree, List<Rectangle> points) {
+		assertEquals(LinearScan.sorted(points), LinearScan.sorted(tree.getPoints(tree.getRoot())));
+		List<Rectangle> windows = LinearScan.windows(points, 30, 0.2, 1);
+		for (int i = 0; i < windows.size(); i ++) {
+			assertEquals(LinearScan.sorted(LinearScan.search(points, windows.get(i))), LinearScan.sorted(tree.search(windows.get(i))));
+		}
+		for (int i = 0; i < 10; i ++) {
+			Point q = windows.get(i).getLow();
+			for (int k = 1; k <= 16; k *= 4) {
+				List<Rectangle> res = tree.nearest(q, k);
+				double[] distances = new double[res.size()];
+				for (int j = 0; j < res.size(); j ++) {
+					distances[j] = LinearScan.distance(res.get(j), q);
+				}
+				assertArrayEquals(LinearScan.nearestDistances(points, q, k), distances, 0);
+			}
+		}
+		List<String> skyline = LinearScan.sorted(LinearScan.skyband(points, 1));
+		assertEquals(skyline, LinearScan.sorted(tree.skyline()));
+		assertEquals(skyline, LinearScan.sorted(tree.parallelSkyline()));
+		assertEquals(skyline, LinearScan.sorted(tree.getSkyline()));
+		assertDominance(tree, points);
+	}
+	
+	static void assertDominance(RTree tree, List<Rectangle> points) {
+		for (int k = 2; k <= 8; k *= 2) {
+			assertEquals(LinearScan.sorted(LinearScan.skyband(points, k)), LinearScan.sorted(tree.kSkyband(k)));
+		}
+		int[] best = LinearScan.topDominated(points, 16);
+		for (int k = 1; k <= 16; k *= 4) { // Points with the same score may come in any order, so their scores are compared
+			List<Rectangle> res = tree.topKDominating(k);
+			int[] scores = new int[res.size()];
+			for (int j = 0; j < res.size(); j ++) {
+				scores[j] = LinearScan.dominated(points, res.get(j));
+			}
+			assertArrayEquals(Arrays.copyOf(best, Math.min(k, best.length)), scores);
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,34 @@
+package rtree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class SkylineIndexTest {
+	@Test
+	public void skylinesKeepTheIds() {
+		RTree tree = new RTree(8, 0.4, Constants.RSTAR, 2);
+		List<Rectangle> points = DataGenerator.antiCorrelated(2000, 2, 1);
+		for (int i = 0; i < points.size(); i ++) {
+			tree.insertWithId(points.get(i));
+		}
+		tree.delete(tree.getSkyline().get(0).getId()); // The live skyline is updated from the deleted entry
+		assertIds(tree, tree.getSkyline());
+		assertIds(tree, tree.skyline());
+		assertIds(tree, tree.kSkyband(3));
+	}
+	
+	private static void assertIds(RTree tree, List<Rectangle> res) {
+		assertFalse(res.isEmpty());
+		for (int i = 0; i < res.size(); i ++) {
+			Rectangle rec = res.get(i);
+			assertNotEquals(0, rec.getId());
+			assertEquals(rec, tree.get(rec.getId()));
+			assertEquals(rec.getId(), tree.get(rec.getId()).getId());
+		}
+	}
+}
\ No newline at end of file
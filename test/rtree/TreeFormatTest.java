@@ -0,0 +1,106 @@
+package rtree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TreeFormatTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void loadedTreesAnswerLikeTheSavedOnes() throws IOException {
+		for (int t = 0; t < RTreeTest.TYPES.length; t ++) {
+			List<Rectangle> points = DataGenerator.correlated(3000, 3, t);
+			RTree tree = new RTree(8, 0.4, RTreeTest.TYPES[t], 3);
+			tree.insertAll(points);
+			Path path = folder.newFile().toPath();
+			tree.save(path);
+			RTree loaded = RTree.load(path);
+			assertEquals(tree.getTreeType(), loaded.getTreeType());
+			assertEquals(tree.getCapacity(), loaded.getCapacity());
+			assertEquals(tree.analyze().getHeight(), loaded.analyze().getHeight());
+			assertEquals(tree.analyze().getNodeCount(), loaded.analyze().getNodeCount());
+			RTreeTest.assertQueries(loaded, points);
+			
+			List<Rectangle> more = DataGenerator.independent(500, 3, t); // The loaded tree takes updates like a built one
+			loaded.insertAll(more);
+			points.addAll(more);
+			RTreeTest.assertQueries(loaded, points);
+		}
+	}
+	
+	@Test
+	public void loadedTreesKeepTheEntryIds() throws IOException {
+		for (int t = 0; t < RTreeTest.TYPES.length; t ++) {
+			List<Rectangle> points = DataGenerator.independent(2000, 2, t);
+			RTree tree = new RTree(8, 0.4, RTreeTest.TYPES[t], 2);
+			Map<Long, Rectangle> model = new HashMap<>();
+			long last = 0;
+			for (int i = 0; i < points.size(); i ++) {
+				last = tree.insertWithId(points.get(i));
+				model.put(last, points.get(i));
+			}
+			for (long id = 1; id <= last; id += 3) {
+				tree.delete(id);
+				model.remove(id);
+			}
+			tree.delete(last); // New ids go on after the largest one given, even if it was deleted
+			model.remove(last);
+			Path path = folder.newFile().toPath();
+			tree.save(path);
+			RTree loaded = RTree.load(path);
+			for (long id = 1; id <= last; id ++) {
+				assertEquals(model.containsKey(id), loaded.contains(id));
+				assertEquals(model.get(id), loaded.get(id));
+			}
+			assertEquals(last + 1, loaded.insertWithId(points.get(0)));
+			
+			long id = model.keySet().iterator().next(); // The ids lead to the leaves of the loaded tree
+			Rectangle moved = new Rectangle(new Point(new double[] {0.5, 0.5}));
+			assertTrue(loaded.update(id, moved));
+			assertEquals(moved, loaded.get(id));
+			assertTrue(loaded.delete(id));
+			assertFalse(loaded.contains(id));
+		}
+	}
+	
+	@Test
+	public void damagedFilesAreRejected() throws IOException {
+		RTree tree = RTree.bulkLoad(DataGenerator.independent(1000, 2, 1), 16, 0.4, Constants.HILBERT, 2);
+		Path path = folder.newFile().toPath();
+		tree.save(path);
+		byte[] saved = Files.readAllBytes(path);
+		
+		assertRejected(path, Arrays.copyOf(saved, saved.length - 1), "truncated");
+		for (int pos = 0; pos < saved.length; pos += 97) { // Every flipped bit is caught, in the header or the body
+			byte[] bytes = saved.clone();
+			bytes[pos] ^= 0x10;
+			assertRejected(path, bytes, "byte " + pos);
+		}
+		byte[] bytes = saved.clone();
+		bytes[0] = 'X';
+		assertRejected(path, bytes, "magic");
+	}
+	
+	private static void assertRejected(Path path, byte[] bytes, String damage) throws IOException {
+		Files.write(path, bytes);
+		try {
+			RTree.load(path);
+			fail("Loaded a file with damaged " + damage + ".");
+		} catch (IllegalArgumentException e) {}
+	}
+}
\ No newline at end of file
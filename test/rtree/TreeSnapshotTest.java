@@ -0,0 +1,110 @@
+package rtree;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class TreeSnapshotTest {
+	@Test
+	public void snapshotsKeepTheirTree() {
+		for (int t = 0; t < RTreeTest.TYPES.length; t ++) {
+			List<Rectangle> points = DataGenerator.independent(2000, 2, t);
+			RTree tree = new RTree(8, 0.4, RTreeTest.TYPES[t], 2);
+			tree.enableSnapshots();
+			tree.insertAll(points.subList(0, 1000));
+			TreeSnapshot first = tree.snapshot();
+			Map<RTNode, RTNode> parents = parents(first);
+			
+			List<Rectangle> now = new ArrayList<>(points.subList(500, 2000));
+			for (int i = 1000; i < 2000; i ++) {
+				tree.insert(points.get(i));
+			}
+			for (int i = 0; i < 500; i ++) {
+				tree.delete(points.get(i));
+			}
+			TreeSnapshot second = tree.snapshot();
+			parents.putAll(parents(second));
+			tree.deleteAll(points.subList(500, 1500));
+			
+			for (Map.Entry<RTNode, RTNode> e : parents.entrySet()) { // The updates copied the nodes they changed
+				assertSame(e.getValue(), e.getKey().parent);
+			}
+			assertQueries(first, points.subList(0, 1000));
+			assertQueries(second, now);
+			RTreeTest.assertQueries(tree, points.subList(1500, 2000));
+		}
+	}
+	
+	private static Map<RTNode, RTNode> parents(TreeSnapshot snapshot) {
+		Map<RTNode, RTNode> res = new IdentityHashMap<>();
+		List<RTNode> nodes = new ArrayList<>();
+		nodes.add(snapshot.getRoot());
+		for (int i = 0; i < nodes.size(); i ++) {
+			RTNode node = nodes.get(i);
+			res.put(node, node.parent);
+			if (!node.isLeaf()) { nodes.addAll(((RTDirNode) node).children); }
+		}
+		return res;
+	}
+	
+	@Test
+	public void snapshotsKeepTheirTreeUnderUpdatesById() {
+		for (int t = 0; t < RTreeTest.TYPES.length; t ++) {
+			List<Rectangle> points = DataGenerator.independent(1000, 2, t);
+			List<Rectangle> moved = DataGenerator.independent(1000, 2, t + 100);
+			RTree tree = new RTree(8, 0.4, RTreeTest.TYPES[t], 2);
+			tree.enableSnapshots();
+			long[] ids = new long[points.size()];
+			for (int i = 0; i < points.size(); i ++) {
+				ids[i] = tree.insertWithId(points.get(i));
+			}
+			TreeSnapshot snapshot = tree.snapshot();
+			
+			List<Rectangle> now = new ArrayList<>();
+			for (int i = 0; i < points.size(); i ++) {
+				if (i % 3 == 0) { tree.delete(ids[i]); }
+				else if (i % 3 == 1) {
+					tree.update(ids[i], moved.get(i));
+					now.add(moved.get(i));
+				} else { now.add(points.get(i)); }
+			}
+			tree.rebuild(((RTDirNode) tree.getRoot()).getChild(0));
+			
+			assertQueries(snapshot, points);
+			RTreeTest.assertQueries(tree, now);
+			assertEquals(moved.get(1), tree.get(ids[1]));
+		}
+	}
+	
+	private static void assertQueries(TreeSnapshot snapshot, List<Rectangle> points) { // The queries of RTreeTest through the snapshot
+		assertEquals(LinearScan.sorted(points), LinearScan.sorted(snapshot.getPoints()));
+		List<Rectangle> windows = LinearScan.windows(points, 30, 0.2, 1);
+		for (int i = 0; i < windows.size(); i ++) {
+			List<String> expected = LinearScan.sorted(LinearScan.search(points, windows.get(i)));
+			assertEquals(expected, LinearScan.sorted(snapshot.search(windows.get(i))));
+			assertEquals(expected, LinearScan.sorted(snapshot.searchStream(windows.get(i)).collect(Collectors.<Rectangle>toList())));
+		}
+		for (int i = 0; i < 10; i ++) {
+			Point q = windows.get(i).getLow();
+			List<Rectangle> res = snapshot.nearest(q, 4);
+			double[] distances = new double[res.size()];
+			for (int j = 0; j < res.size(); j ++) {
+				distances[j] = LinearScan.distance(res.get(j), q);
+			}
+			assertArrayEquals(LinearScan.nearestDistances(points, q, 4), distances, 0);
+		}
+		List<String> skyline = LinearScan.sorted(LinearScan.skyband(points, 1));
+		assertEquals(skyline, LinearScan.sorted(snapshot.skyline()));
+		assertEquals(skyline, LinearScan.sorted(snapshot.parallelSkyline()));
+		assertEquals(skyline, LinearScan.sorted(snapshot.getSkyline()));
+		assertEquals(LinearScan.sorted(LinearScan.skyband(points, 3)), LinearScan.sorted(snapshot.kSkyband(3)));
+	}
+}
\ No newline at end of file